@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020 tkit.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tkit.quarkus.test.docker.properties;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.text.MessageFormat;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * The benchmark of the precompiled {@link PropertyTemplate} and the previous {@link MessageFormat} rendering.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropertyTemplateBenchmark {
+
+    private static final String VALUE = "jdbc:postgresql://$${env:TKIT_BENCH_HOST}:$${env:TKIT_BENCH_PORT}/$${env:TKIT_BENCH_DB}?ssl=false";
+
+    private TestProperty template;
+
+    private MessageFormat message;
+
+    private List<TestProperty> properties;
+
+    private PropertyResolution resolution;
+
+    @Setup
+    public void setup() {
+        // the resolution is created once, the benchmarks measure only the rendering
+        resolution = PropertyResolution.of(null);
+        template = TestPropertyLoader.createTestProperty("quarkus.datasource.jdbc.url", VALUE);
+        message = new MessageFormat("jdbc:postgresql://{0}:{1}/{2}?ssl=false");
+        properties = List.of(
+                TestPropertyLoader.createReference("env:TKIT_BENCH_HOST"),
+                TestPropertyLoader.createReference("env:TKIT_BENCH_PORT"),
+                TestPropertyLoader.createReference("env:TKIT_BENCH_DB"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        resolution.getResolver().close();
+    }
+
+    @Benchmark
+    public String template() {
+        return template.getValue(resolution);
+    }
+
+    @Benchmark
+    public String messageFormat() {
+        List<String> parameters = properties.stream().map(c -> c.getValue(resolution)).collect(Collectors.toList());
+        return message.format(parameters.toArray(new Object[]{}), new StringBuffer(), null).toString();
+    }
+}
@@ -68,4 +68,18 @@ public @interface WithDBData {
      * @return true if db import should be executed for every test case method again, false otherwise
      */
     boolean rinseAndRepeat() default false;
+
+    /**
+     * The checkpoint name of the database service. The data is imported only once, then the checkpoint
+     * of the database is created. The next imports with the same checkpoint name restore the database
+     * to the checkpoint instead of the import of the data.
+     * @return the checkpoint name or empty string to always import the data
+     */
+    String checkpoint() default "";
+
+    /**
+     * The name of the database service with the label {@code test.checkpoint}.
+     * @return the service name or empty string for the only database service with checkpoint support
+     */
+    String checkpointService() default "";
 }
@@ -21,6 +21,9 @@ import io.restassured.specification.RequestSpecification;
 import org.junit.jupiter.api.extension.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.tkit.quarkus.test.docker.DatabaseCheckpoint;
+import org.tkit.quarkus.test.docker.DockerTestEnvironment;
+import org.tkit.quarkus.test.docker.FixtureBake;
 
 import java.io.File;
 import java.lang.reflect.Method;
@@ -134,6 +137,7 @@ public class WithDBDataExtension implements BeforeTestExecutionCallback, AfterTe
         for (int i = 0; i < an.value().length; i++) {
             if (an.deleteAfterTest()) {
                 String path = an.value()[i];
+                FixtureBake.deleted(path);
                 URL fileUrl = this.getClass().getClassLoader().getResource(path);
                 if (fileUrl != null) {
                     log.info("Truncate data via DBImport file {}", fileUrl);
@@ -206,24 +210,53 @@ public class WithDBDataExtension implements BeforeTestExecutionCallback, AfterTe
      * @param an the with db data annotation.
      */
     private void importAllData(WithDBData an) {
+        DatabaseCheckpoint checkpoint = null;
+        if (!an.checkpoint().isEmpty()) {
+            checkpoint = DatabaseCheckpoint.find(an.checkpointService());
+            if (checkpoint.exists(an.checkpoint())) {
+                log.info("[DB-IMPORT] Restore checkpoint {} for data-source {}", an.checkpoint(), an.value());
+                checkpoint.restore(an.checkpoint());
+                return;
+            }
+        }
         for (int i = 0; i < an.value().length; i++) {
-            String path = an.value()[i];
-            URL fileUrl = this.getClass().getClassLoader().getResource(path);
-            if (fileUrl != null) {
-                log.info("[DB-IMPORT] Importing data via DBImport file {}", fileUrl);
-                if (isXml(path)) {
-                    importXmlData(fileUrl, an.deleteBeforeInsert());
-                    log.info("[DB-IMPORT] Imported XML {} datasource {}", this.getClass().getSimpleName(), path);
-                } else if (isExcel(path)) {
-                    importExcelData(fileUrl, an.deleteBeforeInsert());
-                    log.info("[DB-IMPORT] Imported Excel {} datasource {}", this.getClass().getSimpleName(), path);
-                } else if (isCsv(path)) {
-                    importCsvData(fileUrl, an.deleteBeforeInsert());
-                    log.info("[DB-IMPORT] Imported CSV {} datasource {}", this.getClass().getSimpleName(), fileUrl);
-                }
-            } else {
-                log.warn("[DB-IMPORT] Missing database import resource {} in the class-path.", path);
+            importData(an.value()[i], an.deleteBeforeInsert());
+        }
+        if (checkpoint != null) {
+            checkpoint.checkpoint(an.checkpoint());
+        }
+    }
+
+    /**
+     * Imports the data file or csv directory from the class-path. The first import of the file of the baked
+     * fixture image is skipped if the data is not deleted before the insert. The pending fixture images are
+     * baked before the first import, the application and its database migrations are started.
+     *
+     * @param path               the class-path of the file.
+     * @param deleteBeforeInsert delete before insert flag.
+     * @see FixtureBake
+     */
+    public static void importData(String path, boolean deleteBeforeInsert) {
+        FixtureBake.bakePending();
+        if (FixtureBake.consume(path) && !deleteBeforeInsert) {
+            log.info("[DB-IMPORT] Skip import of the baked data {}", path);
+            return;
+        }
+        URL fileUrl = WithDBDataExtension.class.getClassLoader().getResource(path);
+        if (fileUrl != null) {
+            log.info("[DB-IMPORT] Importing data via DBImport file {}", fileUrl);
+            if (isXml(path)) {
+                importXmlData(fileUrl, deleteBeforeInsert);
+                log.info("[DB-IMPORT] Imported XML datasource {}", path);
+            } else if (isExcel(path)) {
+                importExcelData(fileUrl, deleteBeforeInsert);
+                log.info("[DB-IMPORT] Imported Excel datasource {}", path);
+            } else if (isCsv(path)) {
+                importCsvData(fileUrl, deleteBeforeInsert);
+                log.info("[DB-IMPORT] Imported CSV datasource {}", fileUrl);
             }
+        } else {
+            log.warn("[DB-IMPORT] Missing database import resource {} in the class-path.", path);
         }
     }
 
@@ -234,7 +267,7 @@ public class WithDBDataExtension implements BeforeTestExecutionCallback, AfterTe
      * @return the request specification.
      */
     public static RequestSpecification requestSpecification() {
-        String url = System.getProperty("tkit.test.dbimport.url","http://docker:8811/" );
+        String url = DockerTestEnvironment.property("tkit.test.dbimport.url","http://docker:8811/" );
         return new RequestSpecBuilder().setBaseUri(url).build();
     }
 
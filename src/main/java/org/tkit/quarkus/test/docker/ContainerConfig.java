@@ -22,14 +22,28 @@ import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 public class ContainerConfig {
 
     public static final Integer DEFAULT_PRIORITY = 100;
 
+    public static final Duration DEFAULT_POLL_INTERVAL = Duration.ofMillis(50);
+
+    public static final Duration DEFAULT_WAIT_TIMEOUT = Duration.ofSeconds(60);
+
+    private static final Pattern DURATION_PATTERN = Pattern.compile("(\\d+)(ms|us|h|m|s)");
+
+    private static final Pattern MEMORY_PATTERN = Pattern.compile("(\\d+)\\s*([bkmg]?)b?", Pattern.CASE_INSENSITIVE);
+
     public String name;
 
     public List<String> command = new ArrayList<>();
@@ -46,18 +60,66 @@ public class ContainerConfig {
 
     public String image;
 
+    public Build build;
+
     public String waitLogRegex;
 
     public int waitLogTimes = 1;
 
+    public Healthcheck healthcheck;
+
+    public boolean waitHealthcheck = true;
+
+    public List<Integer> waitPorts = new ArrayList<>();
+
+    public String waitHttpPath;
+
+    public Integer waitHttpPort;
+
+    public int waitHttpStatus = 200;
+
+    public Duration waitPollInterval = DEFAULT_POLL_INTERVAL;
+
+    public Duration waitTimeout = DEFAULT_WAIT_TIMEOUT;
+
+    public Duration stopTimeout;
+
+    public String checkpoint;
+
+    public String checkpointDatabase;
+
+    public String checkpointUser;
+
+    public boolean bake = false;
+
+    public List<String> bakeData = new ArrayList<>();
+
     public boolean log = true;
 
     public Map<String, String> environments;
 
     public Map<String, String> volumes;
 
+    public Map<String, String> volumeOptions = new HashMap<>();
+
+    public Map<String, VolumeMode> volumeModes = new HashMap<>();
+
     public Map<String, String> ports;
 
+    public Set<String> dependsOn = new HashSet<>();
+
+    public Long memLimit;
+
+    public Long shmSize;
+
+    public Double cpus;
+
+    public Map<String, String> tmpfs = new LinkedHashMap<>();
+
+    public Map<String, long[]> ulimits = new LinkedHashMap<>();
+
+    public Map<String, String> labels;
+
     public Variables commonVariables = new Variables("test.property.", "test.env.");
 
     public Variables unitVariables = new Variables("test.unit.property.", "test.unit.env.");
@@ -79,10 +141,25 @@ public class ContainerConfig {
 
         // docker image
         image = (String) data.get("image");
+        // docker compose build (short context or long syntax)
+        Object bd = data.get("build");
+        if (bd instanceof String) {
+            build = Build.create(Collections.singletonMap("context", bd));
+        } else if (bd instanceof Map) {
+            build = Build.create((Map<String, Object>) bd);
+        }
         // docker compose environments
         environments = getMap(data, "environment");
         // docker compose volumes
-        volumes = getMapFromList(data, "volumes", ":");
+        volumes = new HashMap<>();
+        getMapFromList(data, "volumes", ":").forEach((k, v) -> {
+            // the container path with the options, for example /data:ro
+            String[] tmp = v.split(":", 2);
+            volumes.put(k, tmp[0]);
+            if (tmp.length > 1) {
+                volumeOptions.put(k, tmp[1]);
+            }
+        });
         // docker compose ports
         ports = getMapFromList(data, "ports", ":");
         // command
@@ -92,10 +169,69 @@ public class ContainerConfig {
         } else {
             command = getList(data, "command");
         }
+        // docker compose healthcheck
+        Object hc = data.get("healthcheck");
+        if (hc instanceof Map) {
+            healthcheck = Healthcheck.create((Map<String, Object>) hc);
+        }
+        // docker compose depends on (short list or long map syntax)
+        Object deps = data.get("depends_on");
+        if (deps instanceof Map) {
+            dependsOn = new HashSet<>(((Map<String, Object>) deps).keySet());
+        } else {
+            dependsOn = new HashSet<>(getList(data, "depends_on"));
+        }
+        // docker compose memory limit
+        Object mem = data.get("mem_limit");
+        if (mem == null) {
+            mem = getPath(data, "deploy", "resources", "limits", "memory");
+        }
+        if (mem != null) {
+            memLimit = parseMemory(mem.toString());
+        }
+        // docker compose shared memory size
+        Object shm = data.get("shm_size");
+        if (shm != null) {
+            shmSize = parseMemory(shm.toString());
+        }
+        // docker compose cpus
+        Object cpu = data.get("cpus");
+        if (cpu == null) {
+            cpu = getPath(data, "deploy", "resources", "limits", "cpus");
+        }
+        if (cpu != null) {
+            cpus = Double.parseDouble(cpu.toString());
+        }
+        // docker compose tmpfs (string or list)
+        Object tfs = data.get("tmpfs");
+        if (tfs instanceof String) {
+            addTmpfs((String) tfs);
+        } else {
+            getList(data, "tmpfs").forEach(this::addTmpfs);
+        }
+        // docker compose ulimits (single value or soft and hard value)
+        Object ul = data.get("ulimits");
+        if (ul instanceof Map) {
+            ((Map<String, Object>) ul).forEach((k, v) -> {
+                if (v instanceof Map) {
+                    // the missing soft or hard limit is the other limit
+                    Map<String, Object> m = (Map<String, Object>) v;
+                    Object soft = m.getOrDefault("soft", m.get("hard"));
+                    Object hard = m.getOrDefault("hard", soft);
+                    if (soft == null) {
+                        throw new IllegalArgumentException("Missing soft or hard value of the ulimit '" + k + "' of the service " + name);
+                    }
+                    ulimits.put(k, new long[]{Long.parseLong(soft.toString()), Long.parseLong(hard.toString())});
+                } else {
+                    long value = Long.parseLong(v.toString());
+                    ulimits.put(k, new long[]{value, value});
+                }
+            });
+        }
 
 
         // labels
-        Map<String, String> labels = getMapFromList(data, "labels", "=");
+        labels = getMapFromList(data, "labels", "=");
         if (!labels.isEmpty()) {
             // check if the service is only for the integration test
             integrationTest = getLabelBoolean(labels, "test.integration", true);
@@ -107,10 +243,66 @@ public class ContainerConfig {
                 imagePullDuration = Duration.parse(labels.getOrDefault("test.image.pull.max_age", "PT10"));
             }
 
+            // volume mode of all volumes or the volume with the container path
+            String defaultMode = labels.get("test.volume.mode");
+            volumes.forEach((k, v) -> {
+                String mode = labels.getOrDefault("test.volume.mode." + v, defaultMode);
+                if (mode != null) {
+                    volumeModes.put(k, VolumeMode.valueOf(mode.trim().toUpperCase()));
+                }
+            });
+
             // wait log rule
             waitLogRegex = labels.getOrDefault("test.Wait.forLogMessage.regex", null);
             waitLogTimes = getLabelInteger(labels, "test.Wait.forLogMessage.times", 1);
 
+            // readiness probes
+            waitHealthcheck = getLabelBoolean(labels, "test.Wait.forHealthcheck", true);
+            String tmp = labels.get("test.Wait.forPort");
+            if (tmp != null && !tmp.isEmpty()) {
+                Arrays.stream(tmp.split(",")).map(String::trim).map(Integer::parseInt).forEach(waitPorts::add);
+            }
+            waitHttpPath = labels.getOrDefault("test.Wait.forHttp.path", null);
+            tmp = labels.get("test.Wait.forHttp.port");
+            if (tmp != null) {
+                waitHttpPort = Integer.parseInt(tmp);
+            }
+            waitHttpStatus = getLabelInteger(labels, "test.Wait.forHttp.status", 200);
+            tmp = labels.get("test.Wait.pollInterval");
+            if (tmp != null) {
+                waitPollInterval = parseDuration(tmp);
+            }
+            tmp = labels.get("test.Wait.timeout");
+            if (tmp != null) {
+                waitTimeout = parseDuration(tmp);
+            }
+            // RAM backed data directories for the tests
+            tmp = labels.get("test.storage.tmpfs");
+            if (tmp != null) {
+                Arrays.stream(tmp.split(",")).map(String::trim).filter(t -> !t.isEmpty()).forEach(this::addTmpfs);
+            }
+            // database checkpoint
+            checkpoint = labels.get("test.checkpoint");
+            checkpointUser = labels.getOrDefault("test.checkpoint.user", environments.getOrDefault("POSTGRES_USER", "postgres"));
+            checkpointDatabase = labels.getOrDefault("test.checkpoint.database", environments.getOrDefault("POSTGRES_DB", checkpointUser));
+
+            // baked fixture image
+            bake = getLabelBoolean(labels, "test.bake", false);
+            tmp = labels.get("test.bake.data");
+            if (tmp != null) {
+                bakeData = Arrays.stream(tmp.split(",")).map(String::trim).filter(t -> !t.isEmpty()).collect(Collectors.toList());
+            }
+            tmp = labels.get("test.stop.timeout");
+            if (tmp != null) {
+                stopTimeout = parseDuration(tmp);
+            }
+            if (healthcheck != null) {
+                tmp = labels.get("test.Wait.forHealthcheck.interval");
+                if (tmp != null) {
+                    healthcheck.interval = parseDuration(tmp);
+                }
+            }
+
             // update log flag
             log = getLabelBoolean(labels, "test.Log", true);
 
@@ -123,16 +315,70 @@ public class ContainerConfig {
 
         // test properties store in the labels
         labels.forEach((k, v) -> {
-            if (!commonVariables.readVariable(k,v)) {
-                if (!unitVariables.readVariable(k,v)) {
-                    integrationVariables.readVariable(k,v);
+            if (!commonVariables.readVariable(name, k, v)) {
+                if (!unitVariables.readVariable(name, k, v)) {
+                    integrationVariables.readVariable(name, k, v);
                 }
             }
         });
 
     }
 
+    /**
+     * Gets the services referenced in the test properties and environment variables.
+     *
+     * @param integrationTest the integration test flag.
+     * @return the set of referenced service names.
+     */
+    public Set<String> getReferencedServices(boolean integrationTest) {
+        Set<String> result = new HashSet<>(commonVariables.getReferencedServices());
+        if (integrationTest) {
+            result.addAll(integrationVariables.getReferencedServices());
+        } else {
+            result.addAll(unitVariables.getReferencedServices());
+        }
+        return result;
+    }
+
+    /**
+     * Gets the services referenced in the environment variables. The container of the service must be restarted
+     * when one of these services is restarted.
+     *
+     * @param integrationTest the integration test flag.
+     * @return the set of referenced service names.
+     */
+    public Set<String> getEnvironmentReferencedServices(boolean integrationTest) {
+        Set<String> result = new HashSet<>(commonVariables.getEnvironmentReferencedServices());
+        if (integrationTest) {
+            result.addAll(integrationVariables.getEnvironmentReferencedServices());
+        } else {
+            result.addAll(unitVariables.getEnvironmentReferencedServices());
+        }
+        return result;
+    }
+
+    /**
+     * Returns {@code true} if the service has only the lazy test properties.
+     *
+     * @param integrationTest the integration test flag.
+     * @return {@code true} if all test properties of the service are lazy.
+     */
+    public boolean isLazy(boolean integrationTest) {
+        List<TestProperty> tmp = getProperties(integrationTest);
+        return !tmp.isEmpty() && tmp.stream().allMatch(p -> p.lazy);
+    }
 
+    /**
+     * Gets the test properties of the service.
+     *
+     * @param integrationTest the integration test flag.
+     * @return the list of the test properties.
+     */
+    public List<TestProperty> getProperties(boolean integrationTest) {
+        List<TestProperty> result = new ArrayList<>(commonVariables.properties);
+        result.addAll(integrationTest ? integrationVariables.properties : unitVariables.properties);
+        return result;
+    }
 
     private static Map<String, String> getMap(Map<String, Object> properties, String key) {
         Object map = properties.get(key);
@@ -172,6 +418,235 @@ public class ContainerConfig {
     }
 
 
+    private void addTmpfs(String value) {
+        int index = value.indexOf(':');
+        if (index < 0) {
+            tmpfs.put(value, "");
+        } else {
+            tmpfs.put(value.substring(0, index), value.substring(index + 1));
+        }
+    }
+
+    /**
+     * Parse the docker compose byte value, for example {@code 512m}, {@code 1gb} or {@code 1048576}.
+     *
+     * @param value the byte value.
+     * @return the number of bytes.
+     */
+    public static long parseMemory(String value) {
+        Matcher m = MEMORY_PATTERN.matcher(value.trim());
+        if (!m.matches()) {
+            throw new IllegalArgumentException("Not supported memory format: " + value);
+        }
+        long result = Long.parseLong(m.group(1));
+        switch (m.group(2).toLowerCase()) {
+            case "k":
+                return result * 1024;
+            case "m":
+                return result * 1024 * 1024;
+            case "g":
+                return result * 1024 * 1024 * 1024;
+            default:
+                return result;
+        }
+    }
+
+    private static Object getPath(Map<String, Object> data, String... path) {
+        Object result = data;
+        for (String p : path) {
+            if (!(result instanceof Map)) {
+                return null;
+            }
+            result = ((Map<String, Object>) result).get(p);
+        }
+        return result;
+    }
+
+    /**
+     * Parse the docker compose duration, for example {@code 1m30s}, {@code 500ms} or the ISO-8601 duration {@code PT0.05S}.
+     *
+     * @param value the duration value.
+     * @return the duration.
+     */
+    public static Duration parseDuration(String value) {
+        String tmp = value.trim();
+        if (tmp.startsWith("P") || tmp.startsWith("p")) {
+            return Duration.parse(tmp);
+        }
+        Matcher m = DURATION_PATTERN.matcher(tmp);
+        Duration result = Duration.ZERO;
+        int end = 0;
+        while (m.find() && m.start() == end) {
+            long v = Long.parseLong(m.group(1));
+            switch (m.group(2)) {
+                case "h":
+                    result = result.plusHours(v);
+                    break;
+                case "m":
+                    result = result.plusMinutes(v);
+                    break;
+                case "s":
+                    result = result.plusSeconds(v);
+                    break;
+                case "ms":
+                    result = result.plusMillis(v);
+                    break;
+                case "us":
+                    result = result.plusNanos(v * 1000);
+                    break;
+                default:
+                    result = result.plusMillis(v);
+            }
+            end = m.end();
+        }
+        if (end != tmp.length() || tmp.isEmpty()) {
+            throw new IllegalArgumentException("Not supported duration format: " + value);
+        }
+        return result;
+    }
+
+    /**
+     * The docker compose healthcheck.
+     */
+    public static class Healthcheck {
+
+        public List<String> test;
+
+        public Duration interval = Duration.ofSeconds(1);
+
+        public Duration timeout;
+
+        public Duration startPeriod;
+
+        public Integer retries;
+
+        static Healthcheck create(Map<String, Object> data) {
+            if (Boolean.TRUE.equals(data.get("disable"))) {
+                return null;
+            }
+            Healthcheck result = new Healthcheck();
+            Object test = data.get("test");
+            if (test instanceof String) {
+                result.test = List.of("CMD-SHELL", (String) test);
+            } else if (test instanceof List) {
+                result.test = ((List<Object>) test).stream().map(Object::toString).collect(Collectors.toList());
+            }
+            if (result.test == null || result.test.isEmpty() || "NONE".equals(result.test.get(0))) {
+                return null;
+            }
+            if (data.get("interval") != null) {
+                result.interval = parseDuration(data.get("interval").toString());
+            }
+            if (data.get("timeout") != null) {
+                result.timeout = parseDuration(data.get("timeout").toString());
+            }
+            if (data.get("start_period") != null) {
+                result.startPeriod = parseDuration(data.get("start_period").toString());
+            }
+            if (data.get("retries") != null) {
+                result.retries = Integer.parseInt(data.get("retries").toString());
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The docker compose build of the image.
+     */
+    public static class Build {
+
+        public String context = ".";
+
+        public String dockerfile = "Dockerfile";
+
+        public Map<String, String> args = new LinkedHashMap<>();
+
+        static Build create(Map<String, Object> data) {
+            Build result = new Build();
+            if (data.get("context") != null) {
+                result.context = data.get("context").toString();
+            }
+            if (data.get("dockerfile") != null) {
+                result.dockerfile = data.get("dockerfile").toString();
+            }
+            // the argument without value is taken from the environment
+            Object args = data.get("args");
+            if (args instanceof Map) {
+                ((Map<String, Object>) args).forEach((k, v) -> result.args.put(k, v == null ? getenv(k) : v.toString()));
+            } else if (args instanceof List) {
+                ((List<Object>) args).stream().map(Object::toString).map(a -> a.split("=", 2))
+                        .forEach(a -> result.args.put(a[0], a.length > 1 ? a[1] : getenv(a[0])));
+            }
+            return result;
+        }
+
+        private static String getenv(String name) {
+            String tmp = System.getenv(name);
+            return tmp != null ? tmp : "";
+        }
+    }
+
+    /**
+     * Returns {@code true} if the volume has the compose {@code ro} option.
+     *
+     * @param source the volume source path.
+     * @return {@code true} for the read-only volume.
+     */
+    public boolean isReadOnlyVolume(String source) {
+        return hasVolumeOption(source, "ro");
+    }
+
+    /**
+     * Returns {@code true} if the volume has the compose {@code rw} option.
+     *
+     * @param source the volume source path.
+     * @return {@code true} for the read-write volume.
+     */
+    public boolean isReadWriteVolume(String source) {
+        return hasVolumeOption(source, "rw");
+    }
+
+    private boolean hasVolumeOption(String source, String option) {
+        String tmp = volumeOptions.get(source);
+        return tmp != null && Arrays.stream(tmp.split(",")).map(String::trim).anyMatch(option::equals);
+    }
+
+    /**
+     * Gets the volume mode of the volume.
+     *
+     * @param source the volume source path.
+     * @return the volume mode.
+     */
+    public VolumeMode getVolumeMode(String source) {
+        VolumeMode mode = volumeModes.get(source);
+        if (mode != null) {
+            return mode;
+        }
+        // the read-only compose volumes are bind mounts
+        return isReadOnlyVolume(source) ? VolumeMode.BIND : VolumeMode.COPY;
+    }
+
+    /**
+     * The volume mode.
+     */
+    public enum VolumeMode {
+
+        /**
+         * Copy the files into the container before the start.
+         */
+        COPY,
+
+        /**
+         * Bind mount the host path, read-only unless the compose volume has the {@code rw} option.
+         */
+        BIND,
+
+        /**
+         * Read-only named volume with the content hash of the host path, populated once and reused.
+         */
+        CACHE
+    }
+
     public enum PullPolicy {
 
         DEFAULT,
@@ -183,6 +658,8 @@ public class ContainerConfig {
 
     public static class Variables {
 
+        static final String LAZY_PREFIX = "lazy.";
+
         public String propertyPrefix;
 
         public List<TestProperty> properties = new ArrayList<>();
@@ -197,17 +674,42 @@ public class ContainerConfig {
         }
 
         public boolean readVariable(String key, String value) {
+            return readVariable(null, key, value);
+        }
+
+        public boolean readVariable(String service, String key, String value) {
+            // the scope of the anonymous free ports is unique in the test environment
+            String scope = service + "/" + key;
             if (key.startsWith(propertyPrefix)) {
                 String k = key.substring(propertyPrefix.length());
-                properties.add(TestPropertyLoader.createTestProperty(k, value));
+                boolean lazy = k.startsWith(LAZY_PREFIX);
+                if (lazy) {
+                    k = k.substring(LAZY_PREFIX.length());
+                }
+                TestProperty property = TestPropertyLoader.createTestProperty(k, value, scope);
+                property.lazy = lazy;
+                properties.add(property);
                 return true;
             }
             if (key.startsWith(envPrefix)) {
                 String k = key.substring(envPrefix.length());
-                environments.add(TestPropertyLoader.createTestProperty(k, value));
+                environments.add(TestPropertyLoader.createTestProperty(k, value, scope));
                 return true;
             }
             return false;
         }
+
+        public Set<String> getReferencedServices() {
+            Set<String> result = new HashSet<>();
+            properties.forEach(p -> result.addAll(p.getReferencedServices()));
+            environments.forEach(p -> result.addAll(p.getReferencedServices()));
+            return result;
+        }
+
+        public Set<String> getEnvironmentReferencedServices() {
+            Set<String> result = new HashSet<>();
+            environments.forEach(p -> result.addAll(p.getReferencedServices()));
+            return result;
+        }
     }
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 tkit.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tkit.quarkus.test.docker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The executor for the blocking container lifecycle operations (start, stop, wait for the container).
+ * <p>
+ * The container operations are I/O bound, therefore the executor does not use the common fork-join pool.
+ * On JDK 21+ the virtual threads are used, otherwise a fixed thread pool of daemon threads.
+ */
+public class ContainerLifecycleExecutor {
+
+    /**
+     * The number of threads for the fixed thread pool. Default: number of the services.
+     */
+    public static final String SYS_PROP_EXECUTOR_THREADS = "test.docker.executor.threads";
+
+    /**
+     * Use the virtual threads if they are supported by the JVM. Default: {@code true}.
+     */
+    public static final String SYS_PROP_EXECUTOR_VIRTUAL = "test.docker.executor.virtual";
+
+    private static final Logger log = LoggerFactory.getLogger(ContainerLifecycleExecutor.class);
+
+    private ContainerLifecycleExecutor() {
+    }
+
+    /**
+     * Creates the container lifecycle executor.
+     *
+     * @param services the number of the services in the docker test environment.
+     * @return the executor service.
+     */
+    public static ExecutorService create(int services) {
+        if (Boolean.parseBoolean(System.getProperty(SYS_PROP_EXECUTOR_VIRTUAL, "true"))) {
+            ExecutorService executor = createVirtualThreadExecutor();
+            if (executor != null) {
+                log.info("Container lifecycle executor with virtual threads");
+                return executor;
+            }
+        }
+        int threads = Integer.getInteger(SYS_PROP_EXECUTOR_THREADS, Math.max(2, services));
+        log.info("Container lifecycle executor with {} threads", threads);
+        return Executors.newFixedThreadPool(threads, new LifecycleThreadFactory());
+    }
+
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (NoSuchMethodException ex) {
+            return null;
+        } catch (Exception ex) {
+            log.warn("Failed to create the virtual thread executor, fallback to the fixed thread pool", ex);
+            return null;
+        }
+    }
+
+    /**
+     * The daemon thread factory for the container lifecycle threads.
+     */
+    private static class LifecycleThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger index = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "tkit-docker-lifecycle-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
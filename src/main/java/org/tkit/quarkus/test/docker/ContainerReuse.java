@@ -0,0 +1,307 @@
+/*
+ * Copyright 2020 tkit.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tkit.quarkus.test.docker;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.model.Container;
+import org.junit.rules.ExternalResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.Network;
+import org.testcontainers.utility.TestcontainersConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * The cross-run reuse of the docker containers.
+ * <p>
+ * Every container is labeled with the fingerprint of the {@link ContainerConfig}, the resolved environment
+ * variables and the content of the volumes. The next run attaches to the running container with the same
+ * fingerprint instead of creating a new one. Stopped containers and containers idle longer than the TTL
+ * are removed, the running container with a changed fingerprint could be used by a concurrent build.
+ */
+public class ContainerReuse {
+
+    /**
+     * Enable the reuse of the containers. Default: {@code false}.
+     */
+    public static final String SYS_PROP_REUSE = "test.docker.reuse";
+
+    /**
+     * The idle time-to-live of the reused container. Default: {@code PT2H}.
+     */
+    public static final String SYS_PROP_REUSE_TTL = "test.docker.reuse.ttl";
+
+    public static final String LABEL_REUSE = "org.tkit.quarkus.test.reuse";
+
+    public static final String LABEL_PROJECT = "org.tkit.quarkus.test.project";
+
+    public static final String LABEL_SERVICE = "org.tkit.quarkus.test.service";
+
+    public static final String LABEL_FINGERPRINT = "org.tkit.quarkus.test.fingerprint";
+
+    private static final Logger log = LoggerFactory.getLogger(ContainerReuse.class);
+
+    private static final Path LAST_USED_FILE = Paths.get(System.getProperty("java.io.tmpdir"), "tkit-quarkus-test-reuse.properties");
+
+    private final String project;
+
+    private final Duration ttl;
+
+    private ContainerReuse(String project, Duration ttl) {
+        this.project = project;
+        this.ttl = ttl;
+    }
+
+    /**
+     * Creates the container reuse for the docker compose file if the reuse is enabled.
+     *
+     * @param dockerComposeFile the docker compose file.
+     * @return the container reuse or {@code null} if the reuse is disabled.
+     */
+    public static ContainerReuse create(File dockerComposeFile) {
+        if (!Boolean.getBoolean(SYS_PROP_REUSE)) {
+            return null;
+        }
+        String project = ContentHash.create().add("compose", dockerComposeFile.getAbsolutePath()).toHex().substring(0, 12);
+        Duration ttl = Duration.parse(System.getProperty(SYS_PROP_REUSE_TTL, "PT2H"));
+        if (!TestcontainersConfiguration.getInstance().environmentSupportsReuse()) {
+            log.warn("Testcontainers reuse is not enabled, the containers will be removed at the end of the run. Set 'testcontainers.reuse.enable=true' in the ~/.testcontainers.properties");
+        }
+        return new ContainerReuse(project, ttl);
+    }
+
+    /**
+     * Gets the stable network of the project.
+     *
+     * @return the network.
+     */
+    public Network createNetwork() {
+        return new ReusableNetwork("tkit-test-" + project);
+    }
+
+    /**
+     * Removes all reused containers which are idle longer than the TTL.
+     */
+    public void evictExpired() {
+        DockerClient client = DockerClientFactory.instance().client();
+        List<Container> containers = client.listContainersCmd()
+                .withShowAll(true)
+                .withLabelFilter(Collections.singletonMap(LABEL_REUSE, "true"))
+                .exec();
+        long now = System.currentTimeMillis();
+        synchronized (ContainerReuse.class) {
+            Properties lastUsed = loadLastUsed();
+            for (Container c : containers) {
+                if (isExpired(c, lastUsed, now)) {
+                    remove(c.getId(), c.getLabels().get(LABEL_SERVICE), "idle longer than " + ttl);
+                    lastUsed.remove(c.getId());
+                }
+            }
+            storeLastUsed(lastUsed);
+        }
+    }
+
+    /**
+     * Starts the container of the service or attach it to the running container with the same fingerprint.
+     *
+     * @param service the docker service.
+     * @param env     the resolved environment variables.
+     */
+    public void start(DockerComposeService service, Map<String, String> env) {
+        TestGenericContainer container = (TestGenericContainer) service.getContainer();
+        String fingerprint = fingerprint(service, env);
+
+        String containerId = find(service.getName(), fingerprint);
+        if (containerId != null) {
+            System.out.printf("[tkit-quarkus-test] Service: '%s' reuse running container %s%n", service.getName(), containerId);
+            container.attach(containerId);
+        } else {
+            Map<String, String> labels = new HashMap<>();
+            labels.put(LABEL_REUSE, "true");
+            labels.put(LABEL_PROJECT, project);
+            labels.put(LABEL_SERVICE, service.getName());
+            labels.put(LABEL_FINGERPRINT, fingerprint);
+            container.withLabels(labels).withReuse(true);
+            container.start();
+        }
+        touch(container.getContainerId());
+    }
+
+    /**
+     * Release the container of the service. The container keeps running for the next run.
+     *
+     * @param service the docker service.
+     */
+    public void release(DockerComposeService service) {
+        String containerId = service.getContainer().getContainerId();
+        if (containerId != null) {
+            touch(containerId);
+        }
+    }
+
+    /**
+     * Creates the fingerprint of the service.
+     *
+     * @param service the docker service.
+     * @param env     the resolved environment variables.
+     * @return the fingerprint.
+     */
+    public static String fingerprint(DockerComposeService service, Map<String, String> env) {
+        ContainerConfig config = service.getConfig();
+        ContentHash hash = ContentHash.create()
+                .add("image", config.image)
+                .add("command", config.command)
+                .add("environments", config.environments)
+                .add("env", env)
+                .add("ports", config.ports)
+                .add("fixedPorts", config.fixedPorts)
+                .add("labels", config.labels)
+                .add("tmpfs", config.tmpfs)
+                .add("shmSize", config.shmSize)
+                .add("memLimit", config.memLimit)
+                .add("cpus", config.cpus);
+        config.ulimits.forEach((k, v) -> hash.add("ulimit." + k, Arrays.toString(v)));
+        new TreeMap<>(service.getVolumePaths()).forEach((k, v) -> hash.addPath(k, v));
+        return hash.toHex();
+    }
+
+    private String find(String service, String fingerprint) {
+        DockerClient client = DockerClientFactory.instance().client();
+        Map<String, String> filter = new HashMap<>();
+        filter.put(LABEL_PROJECT, project);
+        filter.put(LABEL_SERVICE, service);
+        List<Container> containers = client.listContainersCmd()
+                .withShowAll(true)
+                .withLabelFilter(filter)
+                .exec();
+
+        String result = null;
+        long now = System.currentTimeMillis();
+        Properties lastUsed;
+        synchronized (ContainerReuse.class) {
+            lastUsed = loadLastUsed();
+        }
+        for (Container c : containers) {
+            boolean running = "running".equals(c.getState());
+            if (result == null && running && fingerprint.equals(c.getLabels().get(LABEL_FINGERPRINT))) {
+                result = c.getId();
+            } else if (!running) {
+                remove(c.getId(), service, "container is not running");
+            } else if (isExpired(c, lastUsed, now)) {
+                remove(c.getId(), service, "idle longer than " + ttl);
+            }
+            // the running container with the other fingerprint could be used by a concurrent build
+        }
+        return result;
+    }
+
+    private boolean isExpired(Container container, Properties lastUsed, long now) {
+        long time = Long.parseLong(lastUsed.getProperty(container.getId(), Long.toString(container.getCreated() * 1000)));
+        return time + ttl.toMillis() < now;
+    }
+
+    private static void remove(String containerId, String service, String reason) {
+        log.info("Remove reused container {} of the service '{}': {}", containerId, service, reason);
+        try {
+            DockerClientFactory.instance().client().removeContainerCmd(containerId)
+                    .withForce(true)
+                    .withRemoveVolumes(true)
+                    .exec();
+        } catch (Exception ex) {
+            log.warn("Failed to remove the container {}", containerId, ex);
+        }
+    }
+
+    private static void touch(String containerId) {
+        synchronized (ContainerReuse.class) {
+            Properties lastUsed = loadLastUsed();
+            lastUsed.setProperty(containerId, Long.toString(System.currentTimeMillis()));
+            storeLastUsed(lastUsed);
+        }
+    }
+
+    private static Properties loadLastUsed() {
+        Properties result = new Properties();
+        if (Files.exists(LAST_USED_FILE)) {
+            try (InputStream in = Files.newInputStream(LAST_USED_FILE)) {
+                result.load(in);
+            } catch (IOException ex) {
+                log.warn("Failed to read the reuse file {}", LAST_USED_FILE, ex);
+            }
+        }
+        return result;
+    }
+
+    private static void storeLastUsed(Properties properties) {
+        try {
+            Path tmp = Files.createTempFile(LAST_USED_FILE.getParent(), "tkit-quarkus-test-reuse", ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                properties.store(out, "tkit-quarkus-test reused containers last used time");
+            }
+            Files.move(tmp, LAST_USED_FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            log.warn("Failed to write the reuse file {}", LAST_USED_FILE, ex);
+        }
+    }
+
+    /**
+     * The named docker network which is not removed at the end of the run.
+     */
+    static class ReusableNetwork extends ExternalResource implements Network {
+
+        private final String name;
+
+        private String id;
+
+        ReusableNetwork(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public synchronized String getId() {
+            if (id == null) {
+                DockerClient client = DockerClientFactory.instance().client();
+                id = client.listNetworksCmd().withNameFilter(name).exec().stream()
+                        .filter(n -> name.equals(n.getName()))
+                        .map(com.github.dockerjava.api.model.Network::getId)
+                        .findFirst()
+                        .orElseGet(() -> client.createNetworkCmd()
+                                .withName(name)
+                                .withCheckDuplicate(true)
+                                .withLabels(Collections.singletonMap(LABEL_REUSE, "true"))
+                                .exec().getId());
+            }
+            return id;
+        }
+
+        @Override
+        public void close() {
+            // the network is reused by the next run
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2020 tkit.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tkit.quarkus.test.docker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.utility.ResourceReaper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+
+/**
+ * The teardown of the docker services.
+ * <p>
+ * Supported modes of the {@link #SYS_PROP_STOP_MODE}:
+ * <ul>
+ *     <li>{@code sync} - stop and remove the containers before the JVM exits</li>
+ *     <li>{@code ryuk} - unregister the containers from the JVM shutdown cleanup, the Testcontainers Ryuk sidecar
+ *     removes them after the JVM exits</li>
+ *     <li>{@code process} - stop and remove the containers by the detached {@code docker} CLI process</li>
+ * </ul>
+ * The containers which failed to stop are reported at the end of the teardown, the failures of the detached process
+ * are reported by the next test run.
+ */
+public class ContainerStopper {
+
+    /**
+     * The teardown mode {@code sync}, {@code ryuk} or {@code process}. Default: {@code sync}.
+     */
+    public static final String SYS_PROP_STOP_MODE = "test.docker.stop.mode";
+
+    /**
+     * The default graceful stop timeout of the containers. The label {@code test.stop.timeout} overrides the value
+     * for the service. Default: the container is killed.
+     */
+    public static final String SYS_PROP_STOP_TIMEOUT = "test.docker.stop.timeout";
+
+    private static final Logger log = LoggerFactory.getLogger(ContainerStopper.class);
+
+    private static final Path STOP_LOG = Paths.get("target", "tkit-docker-stop.log");
+
+    private static final String FAILED = "FAILED ";
+
+    /**
+     * The teardown mode.
+     */
+    public enum Mode {
+        SYNC,
+        RYUK,
+        PROCESS;
+    }
+
+    private final Mode mode;
+
+    private ContainerStopper(Mode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Creates the container stopper and reports the failures of the previous detached teardown.
+     *
+     * @return the container stopper.
+     */
+    public static ContainerStopper create() {
+        Mode mode = Mode.valueOf(System.getProperty(SYS_PROP_STOP_MODE, "sync").trim().toUpperCase(Locale.ROOT));
+        if (mode == Mode.RYUK && Boolean.parseBoolean(System.getenv("TESTCONTAINERS_RYUK_DISABLED"))) {
+            log.warn("Testcontainers Ryuk is disabled, fallback to the stop mode 'process'");
+            mode = Mode.PROCESS;
+        }
+        if (mode == Mode.PROCESS && System.getProperty("os.name", "").toLowerCase(Locale.ROOT).startsWith("windows")) {
+            log.warn("The stop mode 'process' is not supported on Windows, fallback to the stop mode 'sync'");
+            mode = Mode.SYNC;
+        }
+        reportPreviousFailures();
+        return new ContainerStopper(mode);
+    }
+
+    /**
+     * Gets the graceful stop timeout of the service.
+     *
+     * @param config the container configuration.
+     * @return the stop timeout or {@code null} if the container is killed.
+     */
+    public static Duration getStopTimeout(ContainerConfig config) {
+        if (config.stopTimeout != null) {
+            return config.stopTimeout;
+        }
+        String tmp = System.getProperty(SYS_PROP_STOP_TIMEOUT);
+        if (tmp == null || tmp.isBlank()) {
+            return null;
+        }
+        return ContainerConfig.parseDuration(tmp);
+    }
+
+    /**
+     * Stops the services.
+     *
+     * @param services        the services to stop.
+     * @param integrationTest the integration test flag.
+     * @param executor        the executor of the synchronous stop.
+     */
+    public void stop(Collection<DockerComposeService> services, boolean integrationTest, ExecutorService executor) {
+        if (mode == Mode.SYNC) {
+            stopSync(services, integrationTest, executor);
+            return;
+        }
+        Map<String, DockerComposeService> owned = new LinkedHashMap<>();
+        services.forEach(s -> {
+            if (s.isContainerOwner()) {
+                // the container is removed by the teardown, the port lease files are released now
+                s.clearProperties();
+                s.releasePorts();
+                owned.put(s.getContainer().getContainerId(), s);
+            } else {
+                s.stop(integrationTest);
+            }
+        });
+        if (owned.isEmpty()) {
+            return;
+        }
+        owned.keySet().forEach(id -> ResourceReaper.instance().unregisterContainer(id));
+        if (mode == Mode.PROCESS) {
+            try {
+                startProcess(owned);
+            } catch (IOException ex) {
+                log.warn("Failed to start the docker stop process, the containers are removed by Ryuk", ex);
+            }
+        }
+        System.out.printf("[tkit-quarkus-test] Handed %d containers to the %s teardown: %s%n", owned.size(), mode.name().toLowerCase(Locale.ROOT),
+                owned.values().stream().map(DockerComposeService::getName).collect(Collectors.joining(", ")));
+    }
+
+    private void stopSync(Collection<DockerComposeService> services, boolean integrationTest, ExecutorService executor) {
+        Map<String, String> failed = new TreeMap<>();
+        CompletableFuture.allOf(services.stream()
+                .map(s -> CompletableFuture.runAsync(() -> s.stop(integrationTest), executor)
+                        .exceptionally(e -> {
+                            Throwable cause = e.getCause() != null ? e.getCause() : e;
+                            synchronized (failed) {
+                                failed.put(s.getName(), String.valueOf(cause.getMessage()));
+                            }
+                            log.debug("Failed to stop the service {}", s.getName(), cause);
+                            return null;
+                        }))
+                .toArray(CompletableFuture[]::new)).join();
+        if (!failed.isEmpty()) {
+            report(failed);
+        }
+    }
+
+    private static void startProcess(Map<String, DockerComposeService> owned) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        owned.forEach((id, s) -> {
+            Duration timeout = getStopTimeout(s.getConfig());
+            if (timeout != null) {
+                sb.append("docker stop -t ").append(timeout.getSeconds()).append(' ').append(id).append(" >/dev/null 2>&1; ");
+            }
+            sb.append("docker rm -f -v ").append(id).append(" >/dev/null || echo \"").append(FAILED).append(s.getName()).append(' ').append(id).append("\"; ");
+        });
+        Files.createDirectories(STOP_LOG.getParent());
+        File file = STOP_LOG.toFile();
+        new ProcessBuilder("sh", "-c", sb.toString())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(file))
+                .redirectInput(ProcessBuilder.Redirect.from(new File("/dev/null")))
+                .start();
+    }
+
+    private static void reportPreviousFailures() {
+        if (!Files.exists(STOP_LOG)) {
+            return;
+        }
+        try {
+            Map<String, String> failed = new TreeMap<>();
+            Files.readAllLines(STOP_LOG, StandardCharsets.UTF_8).stream()
+                    .filter(l -> l.startsWith(FAILED))
+                    .map(l -> l.substring(FAILED.length()).split(" ", 2))
+                    .forEach(l -> failed.put(l[0], "container " + (l.length > 1 ? l[1] : "") + " of the previous run"));
+            if (!failed.isEmpty()) {
+                report(failed);
+            }
+            Files.deleteIfExists(STOP_LOG);
+        } catch (IOException ex) {
+            log.warn("Failed to read the docker stop log {}", STOP_LOG, ex);
+        }
+    }
+
+    private static void report(Map<String, String> failed) {
+        StringBuilder sb = new StringBuilder("------------------------------\nFailed to stop the containers:\n");
+        failed.forEach((k, v) -> sb.append(String.format("%-30s%s%n", k, v)));
+        sb.append("------------------------------");
+        System.out.println(sb);
+    }
+}
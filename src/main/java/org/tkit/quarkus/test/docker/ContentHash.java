@@ -0,0 +1,147 @@
+/*
+ * Copyright 2020 tkit.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tkit.quarkus.test.docker;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The stable SHA-256 content hash of values, files and directories.
+ */
+public class ContentHash {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final MessageDigest digest;
+
+    private ContentHash() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Creates new content hash.
+     *
+     * @return the content hash.
+     */
+    public static ContentHash create() {
+        return new ContentHash();
+    }
+
+    /**
+     * Adds the key and value to the hash.
+     *
+     * @param key   the key.
+     * @param value the value.
+     * @return the content hash.
+     */
+    public ContentHash add(String key, Object value) {
+        update(key);
+        update(value == null ? "<null>" : value.toString());
+        return this;
+    }
+
+    /**
+     * Adds the map sorted by the keys to the hash.
+     *
+     * @param key the key.
+     * @param map the map.
+     * @return the content hash.
+     */
+    public ContentHash add(String key, Map<String, String> map) {
+        update(key);
+        if (map != null) {
+            new TreeMap<>(map).forEach(this::add);
+        }
+        return this;
+    }
+
+    /**
+     * Adds the content of the file or of all files in the directory to the hash.
+     *
+     * @param key  the key.
+     * @param path the file or directory path.
+     * @return the content hash.
+     */
+    public ContentHash addPath(String key, Path path) {
+        update(key);
+        if (path == null || !Files.exists(path)) {
+            update("<missing>");
+            return this;
+        }
+        if (!Files.isDirectory(path)) {
+            updateFile(path);
+            return this;
+        }
+        try (Stream<Path> files = Files.walk(path)) {
+            List<Path> list = files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            for (Path file : list) {
+                update(path.relativize(file).toString().replace('\\', '/'));
+                updateFile(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading the directory " + path, e);
+        }
+        return this;
+    }
+
+    /**
+     * Gets the hex string of the hash.
+     *
+     * @return the hex string.
+     */
+    public String toHex() {
+        byte[] bytes = digest.digest();
+        char[] result = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            result[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            result[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(result);
+    }
+
+    private void update(String value) {
+        byte[] tmp = value.getBytes(StandardCharsets.UTF_8);
+        digest.update(Integer.toString(tmp.length).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) ':');
+        digest.update(tmp);
+    }
+
+    private void updateFile(Path file) {
+        byte[] buffer = new byte[8192];
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading the file " + file, e);
+        }
+    }
+}
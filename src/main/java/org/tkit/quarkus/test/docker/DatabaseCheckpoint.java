@@ -0,0 +1,241 @@
+/*
+ * Copyright 2020 tkit.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tkit.quarkus.test.docker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.containers.Container;
+
+import java.util.*;
+
+/**
+ * The checkpoint and restore of the database service in the running docker test environment.
+ * <p>
+ * The database service is configured by the label {@code test.checkpoint=<type>}. Supported types:
+ * <ul>
+ *     <li>{@code postgres} - the checkpoint is the template database {@code CREATE DATABASE .. TEMPLATE ..},
+ *     the restore drops the database and clones it from the template</li>
+ * </ul>
+ * The open connections of the database are terminated by the checkpoint and the restore. The new connections
+ * are rejected until the checkpoint or the restore is finished, the pooled connections of the application are
+ * closed and must be validated by the connection pool.
+ */
+public abstract class DatabaseCheckpoint {
+
+    /**
+     * The PostgreSQL template database checkpoint.
+     */
+    public static final String TYPE_POSTGRES = "postgres";
+
+    private static final Logger log = LoggerFactory.getLogger(DatabaseCheckpoint.class);
+
+    protected final DockerComposeService service;
+
+    private final Set<String> checkpoints = Collections.synchronizedSet(new HashSet<>());
+
+    protected DatabaseCheckpoint(DockerComposeService service) {
+        this.service = service;
+    }
+
+    /**
+     * Finds the checkpoint of the started database service.
+     *
+     * @param name the service name or empty string for the only database service with the label {@code test.checkpoint}.
+     * @return the database checkpoint.
+     * @throws IllegalStateException if the database service does not exist or is not unique.
+     */
+    public static DatabaseCheckpoint find(String name) {
+        List<DockerComposeService> services = new ArrayList<>();
+        // the isolated test thread uses only its own environment
+        DockerTestEnvironment current = DockerTestEnvironment.current();
+        List<DockerTestEnvironment> environments = current != null ? List.of(current) : ServiceLifecycle.getEnvironments();
+        environments.forEach(e -> e.getServices().stream()
+                .filter(s -> s.getConfig().checkpoint != null)
+                .filter(s -> name.isEmpty() || name.equals(s.getName()))
+                .filter(s -> s.getContainer() != null && s.getContainer().getContainerId() != null)
+                .forEach(services::add));
+        if (services.size() != 1) {
+            throw new IllegalStateException("Expected one started database service with the label test.checkpoint"
+                    + (name.isEmpty() ? "" : " and name '" + name + "'") + " but found: "
+                    + services.stream().map(DockerComposeService::getName).reduce((a, b) -> a + ", " + b).orElse("none"));
+        }
+        return services.get(0).getCheckpoint();
+    }
+
+    /**
+     * Creates the database checkpoint of the service.
+     *
+     * @param service the docker service.
+     * @return the database checkpoint or {@code null} if the service has no checkpoint type.
+     */
+    public static DatabaseCheckpoint create(DockerComposeService service) {
+        ContainerConfig config = service.getConfig();
+        String type = config != null ? config.checkpoint : null;
+        if (type == null) {
+            return null;
+        }
+        if (TYPE_POSTGRES.equals(type)) {
+            return new PostgresCheckpoint(service);
+        }
+        throw new IllegalStateException("Not supported checkpoint type '" + type + "' of the service " + service.getName());
+    }
+
+    /**
+     * Returns {@code true} if the checkpoint was created in this run.
+     *
+     * @param name the checkpoint name.
+     * @return {@code true} if the checkpoint exists.
+     */
+    public boolean exists(String name) {
+        return checkpoints.contains(name);
+    }
+
+    /**
+     * Creates the checkpoint of the database. The existing checkpoint with the same name is replaced.
+     *
+     * @param name the checkpoint name.
+     */
+    public void checkpoint(String name) {
+        long start = System.nanoTime();
+        doCheckpoint(name);
+        checkpoints.add(name);
+        System.out.printf("[tkit-quarkus-test] Service: '%s' checkpoint '%s' created in %d ms%n", service.getName(), name, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Restores the database to the checkpoint.
+     *
+     * @param name the checkpoint name.
+     * @throws IllegalStateException if the checkpoint does not exist.
+     */
+    public void restore(String name) {
+        if (!exists(name)) {
+            throw new IllegalStateException("Missing checkpoint '" + name + "' of the service " + service.getName());
+        }
+        long start = System.nanoTime();
+        doRestore(name);
+        System.out.printf("[tkit-quarkus-test] Service: '%s' restored checkpoint '%s' in %d ms%n", service.getName(), name, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    protected abstract void doCheckpoint(String name);
+
+    protected abstract void doRestore(String name);
+
+    /**
+     * Executes the command in the database container.
+     *
+     * @param cmd the command.
+     * @return the standard output.
+     */
+    protected String exec(String... cmd) {
+        try {
+            Container.ExecResult result = service.getContainer().execInContainer(cmd);
+            if (result.getExitCode() != 0) {
+                throw new IllegalStateException("Error execute " + Arrays.toString(cmd) + " in the service " + service.getName() + ": " + result.getStderr());
+            }
+            return result.getStdout();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted execute the command in the service " + service.getName(), ex);
+        } catch (java.io.IOException ex) {
+            throw new IllegalStateException("Error execute the command in the service " + service.getName(), ex);
+        }
+    }
+
+    /**
+     * The PostgreSQL template database checkpoint.
+     */
+    static class PostgresCheckpoint extends DatabaseCheckpoint {
+
+        PostgresCheckpoint(DockerComposeService service) {
+            super(service);
+        }
+
+        private static final int ATTEMPTS = 3;
+
+        @Override
+        protected void doCheckpoint(String name) {
+            String db = service.getConfig().checkpointDatabase;
+            String template = templateName(db, name);
+            exclusive(db, "DROP DATABASE IF EXISTS " + quote(template),
+                    "CREATE DATABASE " + quote(template) + " TEMPLATE " + quote(db));
+        }
+
+        @Override
+        protected void doRestore(String name) {
+            String db = service.getConfig().checkpointDatabase;
+            exclusive(db, "DROP DATABASE IF EXISTS " + quote(db),
+                    "CREATE DATABASE " + quote(db) + " TEMPLATE " + quote(templateName(db, name)));
+        }
+
+        /**
+         * Executes the statements without the connections of the database. The connection pool of the application
+         * could reconnect between the terminate and the statements, the new connections are rejected and the
+         * statements are retried if the database is still accessed.
+         */
+        private void exclusive(String db, String... sql) {
+            List<String> tmp = new ArrayList<>();
+            tmp.add("ALTER DATABASE " + quote(db) + " ALLOW_CONNECTIONS false");
+            tmp.add(terminate(db));
+            tmp.addAll(Arrays.asList(sql));
+            try {
+                for (int i = 1; ; i++) {
+                    try {
+                        psql(tmp.toArray(new String[0]));
+                        return;
+                    } catch (IllegalStateException ex) {
+                        if (i >= ATTEMPTS || ex.getMessage() == null || !ex.getMessage().contains("is being accessed by other users")) {
+                            throw ex;
+                        }
+                        log.warn("Database '{}' of the service {} is still accessed, retry {}/{}", db, service.getName(), i + 1, ATTEMPTS);
+                    }
+                }
+            } finally {
+                // the restored database allows the connections, the failed statements could keep the database locked
+                try {
+                    psql("ALTER DATABASE " + quote(db) + " ALLOW_CONNECTIONS true");
+                } catch (IllegalStateException ex) {
+                    // the database could be dropped by the failed restore, otherwise it stays locked
+                    log.warn("Failed to allow the connections of the database '{}' of the service {}", db, service.getName(), ex);
+                }
+            }
+        }
+
+        private void psql(String... sql) {
+            // connect to the maintenance database, the database can not be copied or dropped with open connections.
+            // Every -c command is a separate transaction, the CREATE and DROP DATABASE can not run in a transaction block.
+            List<String> cmd = new ArrayList<>(List.of("psql", "-U", service.getConfig().checkpointUser, "-d", "postgres", "-v", "ON_ERROR_STOP=1", "-q"));
+            for (String s : sql) {
+                cmd.add("-c");
+                cmd.add(s);
+            }
+            exec(cmd.toArray(new String[0]));
+        }
+
+        private static String terminate(String db) {
+            return "SELECT pg_terminate_backend(pid) FROM pg_stat_activity WHERE datname = '" + db.replace("'", "''") + "' AND pid <> pg_backend_pid();";
+        }
+
+        static String templateName(String db, String name) {
+            return db + "_checkpoint_" + name.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9_]", "_");
+        }
+
+        private static String quote(String name) {
+            return "\"" + name.replace("\"", "\"\"") + "\"";
+        }
+    }
+}
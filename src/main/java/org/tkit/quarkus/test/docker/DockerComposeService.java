@@ -16,19 +16,33 @@
 
 package org.tkit.quarkus.test.docker;
 
+import com.github.dockerjava.api.model.AccessMode;
+import com.github.dockerjava.api.model.Bind;
+import com.github.dockerjava.api.model.ContainerNetwork;
+import com.github.dockerjava.api.model.HealthCheck;
+import com.github.dockerjava.api.model.HostConfig;
+import com.github.dockerjava.api.model.Ulimit;
+import com.github.dockerjava.api.model.Volume;
 import org.tkit.quarkus.test.docker.properties.TestProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.BindMode;
 import org.testcontainers.containers.GenericContainer;
 import org.testcontainers.containers.Network;
 import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.containers.wait.strategy.WaitAllStrategy;
+import org.testcontainers.containers.wait.strategy.WaitStrategy;
+import org.testcontainers.images.ImagePullPolicy;
 import org.testcontainers.images.PullPolicy;
 import org.testcontainers.utility.MountableFile;
 
 import java.io.File;
+import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -38,11 +52,37 @@ public class DockerComposeService {
 
     private TestGenericContainer container;
 
+    private FixtureBake bake;
+
+    private ImageBuild build;
+
+    private DatabaseCheckpoint checkpoint;
+
     private ContainerConfig config;
 
+    private final Map<String, Path> volumePaths = new HashMap<>();
+
+    private ContainerReuse reuse;
+
+    private boolean isolated;
+
+    private boolean systemProperties;
+
+    private final List<PortLease> portLeases = new ArrayList<>();
+
+    private Map<String, String> properties = Collections.emptyMap();
+
+    private String fingerprint;
+
     protected DockerComposeService(Network network, ContainerConfig config, Path dir) {
         this.config = config;
+        // the built image is content-addressed, the image name changes with the build context
+        this.build = ImageBuild.create(config, dir);
+        if (build != null) {
+            config.image = build.getImage();
+        }
         this.container = createContainer(network, config, dir);
+        this.checkpoint = DatabaseCheckpoint.create(this);
     }
 
     public static DockerComposeService createDockerComposeService(Network network, ContainerConfig config, Path dir) {
@@ -57,56 +97,276 @@ public class DockerComposeService {
         return config;
     }
 
+    /**
+     * Gets the fingerprint of the configuration and the content of the volumes. The fingerprint is created once,
+     * by the start of the service in the keep-alive environment or by the first call.
+     *
+     * @return the fingerprint of the service.
+     * @see ContainerReuse#fingerprint(DockerComposeService, Map)
+     */
+    public synchronized String getFingerprint() {
+        if (fingerprint == null) {
+            fingerprint = ContainerReuse.fingerprint(this, Collections.emptyMap());
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Gets the database checkpoint of the service.
+     *
+     * @return the database checkpoint or {@code null} if the service has no label {@code test.checkpoint}.
+     */
+    public DatabaseCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * Gets the image build of the service.
+     *
+     * @return the image build or {@code null} if the service has no docker compose {@code build}.
+     */
+    public ImageBuild getBuild() {
+        return build;
+    }
+
+    public FixtureBake getBake() {
+        return bake;
+    }
+
+    void setBake(FixtureBake bake) {
+        this.bake = bake;
+    }
+
     public GenericContainer<?> getContainer() {
         return container;
     }
 
+    /**
+     * Gets the host paths of the volumes.
+     *
+     * @return the map of the container path and the host path.
+     */
+    public Map<String, Path> getVolumePaths() {
+        return volumePaths;
+    }
+
+    /**
+     * Gets the resolved test properties of the started service.
+     *
+     * @return the map of the test properties.
+     */
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+
+    void setReuse(ContainerReuse reuse) {
+        this.reuse = reuse;
+    }
+
+    void setIsolated(boolean isolated) {
+        this.isolated = isolated;
+    }
+
     public void start(DockerTestEnvironment environment, boolean integrationTest) {
         if (container == null) {
             return;
         }
-        // update environment variables
-        List<TestProperty> te = new ArrayList<>(config.commonVariables.environments);
-        if (integrationTest) {
-            te.addAll(config.integrationVariables.environments);
-        } else {
-            te.addAll(config.unitVariables.environments);
+        StartupReport.ServiceTimings timings = environment.getStartupReport().service(config.name);
+        long begin = System.nanoTime();
+        // the refresh of the environment compares the fingerprint of the started service
+        if (DockerTestEnvironment.isKeepAlive()) {
+            getFingerprint();
         }
-        Map<String, String> env = createValues(environment, te);
+
+        // update environment variables
+        leasePorts();
+        Map<String, String> env = createValues(environment, getVariables(integrationTest, true));
         System.out.println(String.format("[tkit-quarkus-test] Service: '%s' add test environment variables: %s", config.name, env));
         container.withEnv(env);
+        timings.record(StartupReport.ENV, begin);
 
-        // start container
-        container.start();
+        // build the image if the prefetch is disabled
+        if (build != null && !build.isBuilt()) {
+            begin = System.nanoTime();
+            build.build();
+            timings.record(StartupReport.BUILD, begin);
+        }
 
-        // update properties
-        List<TestProperty> tp = new ArrayList<>(config.commonVariables.properties);
-        if (integrationTest) {
-            tp.addAll(config.integrationVariables.properties);
+        // start container
+        begin = System.nanoTime();
+        if (reuse != null) {
+            reuse.start(this, env);
         } else {
-            tp.addAll(config.unitVariables.properties);
+            container.start();
+        }
+        timings.record(StartupReport.CREATE, begin, container.getCreatedTime());
+        timings.record(StartupReport.START, container.getCreatedTime(), container.getStartingTime());
+        timings.record(StartupReport.WAIT, container.getStartingTime(), container.getStartedTime());
+
+        begin = System.nanoTime();
+        updateProperties(environment, integrationTest);
+        timings.record(StartupReport.PROPERTIES, begin);
+    }
+
+    /**
+     * Attach the service to the running container started by another test JVM.
+     *
+     * @param environment     the docker test environment.
+     * @param containerId     the docker container ID.
+     * @param integrationTest the integration test flag.
+     */
+    public void attach(DockerTestEnvironment environment, String containerId, boolean integrationTest) {
+        if (container == null) {
+            return;
         }
-        Map<String, String> prop = createValues(environment, tp);
+        System.out.printf("[tkit-quarkus-test] Service: '%s' attach to the running container %s%n", config.name, containerId);
+        container.attach(containerId);
+        updateProperties(environment, integrationTest);
+    }
+
+    /**
+     * Resolves the test properties of the running service again.
+     *
+     * @param environment     the docker test environment.
+     * @param integrationTest the integration test flag.
+     */
+    void resolveProperties(DockerTestEnvironment environment, boolean integrationTest) {
+        if (container == null) {
+            return;
+        }
+        updateProperties(environment, integrationTest);
+    }
+
+    private void updateProperties(DockerTestEnvironment environment, boolean integrationTest) {
+        Map<String, String> prop = createValues(environment, getVariables(integrationTest, false));
         System.out.println(String.format("[tkit-quarkus-test] Service: '%s' update test properties: %s", config.name, prop));
-        prop.forEach(System::setProperty);
+        // the isolated environment publishes the properties only by the environment
+        clearProperties();
+        if (!isolated && DockerTestEnvironment.isSystemProperties()) {
+            prop.forEach(System::setProperty);
+            systemProperties = true;
+        }
+        properties = prop;
     }
 
-    private static Map<String, String> createValues(DockerTestEnvironment environment, List<TestProperty> properties) {
-        return properties.stream().collect(Collectors.toMap(p -> p.name, p -> p.getValue(environment)));
+    private Map<String, String> createValues(DockerTestEnvironment environment, List<TestProperty> properties) {
+        Map<String, String> result = new HashMap<>(environment.getPropertyResolver().resolve(properties));
+        result.entrySet().removeIf(e -> {
+            if (e.getValue() == null) {
+                log.warn("The test property '{}' of the service '{}' has no value", e.getKey(), config.name);
+                return true;
+            }
+            return false;
+        });
+        return result;
+    }
+
+    /**
+     * Gets the test properties or environment variables of the service.
+     *
+     * @param integrationTest the integration test flag.
+     * @param env             {@code true} for the environment variables.
+     * @return the list of the test properties.
+     */
+    private List<TestProperty> getVariables(boolean integrationTest, boolean env) {
+        ContainerConfig.Variables test = integrationTest ? config.integrationVariables : config.unitVariables;
+        List<TestProperty> result = new ArrayList<>(env ? config.commonVariables.environments : config.commonVariables.properties);
+        result.addAll(env ? test.environments : test.properties);
+        return result;
     }
 
     public void stop(boolean integrationTest) {
-        // clear system properties
-        List<TestProperty> tp = new ArrayList<>(config.commonVariables.properties);
-        if (integrationTest) {
-            tp.addAll(config.integrationVariables.properties);
+        clearProperties();
+
+        // stop container
+        if (reuse != null) {
+            reuse.release(this);
         } else {
-            tp.addAll(config.unitVariables.properties);
+            Duration timeout = ContainerStopper.getStopTimeout(config);
+            String id = container.getContainerId();
+            if (timeout != null && id != null && !container.isAttached()) {
+                // graceful stop before the container is killed and removed
+                try {
+                    DockerClientFactory.instance().client().stopContainerCmd(id).withTimeout((int) timeout.getSeconds()).exec();
+                } catch (Exception ex) {
+                    log.debug("Failed to stop the container {} of the service {}", id, config.name, ex);
+                }
+            }
+            container.stop();
         }
-        tp.forEach(p -> System.clearProperty(p.name));
+        releasePorts();
+    }
 
-        // stop container
-        container.stop();
+    /**
+     * Releases the leased host ports of the service.
+     */
+    void releasePorts() {
+        portLeases.forEach(PortLease::close);
+        portLeases.clear();
+    }
+
+    /**
+     * Leases the host ports of the fixed port service, the leased port replaces the compose host port.
+     */
+    private void leasePorts() {
+        if (!config.fixedPorts || !PortLease.isEnabled() || !portLeases.isEmpty()) {
+            return;
+        }
+        // the bindings of the previous start are replaced
+        container.setPortBindings(new ArrayList<>());
+        config.ports.forEach((key, value) -> {
+            PortLease lease = PortLease.acquire(config.name, Integer.parseInt(key));
+            portLeases.add(lease);
+            container.withFixedExposedPort(lease.getPort(), Integer.parseInt(value));
+        });
+    }
+
+    /**
+     * Clear the system properties of the service.
+     */
+    public void clearProperties() {
+        // the resolved properties are the properties set by this service
+        if (systemProperties) {
+            properties.keySet().forEach(System::clearProperty);
+            systemProperties = false;
+        }
+    }
+
+    /**
+     * Returns {@code true} if the container is owned by this service and has to be stopped by this service.
+     *
+     * @return {@code true} if the container is owned by this service.
+     */
+    public boolean isContainerOwner() {
+        return container != null && reuse == null && !container.isAttached() && container.getContainerId() != null;
+    }
+
+    /**
+     * Gets the last log lines of the container.
+     *
+     * @param lines the maximum number of lines.
+     * @return the list of the log lines or empty list if the container was not created.
+     */
+    public List<String> getLastLogLines(int lines) {
+        if (container == null || container.getContainerId() == null) {
+            return Collections.emptyList();
+        }
+        try {
+            List<String> tmp = Arrays.asList(container.getLogs().split("\\r?\\n"));
+            return tmp.subList(Math.max(0, tmp.size() - lines), tmp.size());
+        } catch (Exception ex) {
+            log.debug("Failed to read the logs of the service {}", config.name, ex);
+            return Collections.emptyList();
+        }
+    }
+
+    private static boolean isJarResource(String key) {
+        String name = key.startsWith("/") ? key.substring(1) : key;
+        URL url = Thread.currentThread().getContextClassLoader().getResource(name);
+        if (url == null) {
+            url = DockerComposeService.class.getClassLoader().getResource(name);
+        }
+        return url != null && !"file".equals(url.getProtocol());
     }
 
     public Integer getPort(int port) {
@@ -130,6 +390,26 @@ public class DockerComposeService {
         return container.getContainerIpAddress();
     }
 
+    /**
+     * Gets the IP address of the container in the network.
+     *
+     * @param network the network of the test environment.
+     * @return the IP address of the container.
+     */
+    public String getIpAddress(Network network) {
+        return getIpAddress(container, network);
+    }
+
+    public static String getIpAddress(GenericContainer<?> container, Network network) {
+        String id = network != null ? network.getId() : null;
+        return container.getCurrentContainerInfo().getNetworkSettings().getNetworks().values().stream()
+                .filter(n -> id == null || id.equals(n.getNetworkID()))
+                .map(ContainerNetwork::getIpAddress)
+                .filter(Objects::nonNull)
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No IP address of the container " + container.getContainerId()));
+    }
+
     public String getUrl(int port) {
         return getUrl(container, port);
     }
@@ -138,6 +418,23 @@ public class DockerComposeService {
         return "http://" + getHost(container) + ":" + getPort(container, port);
     }
 
+    /**
+     * Creates the image pull policy of the service.
+     *
+     * @param config the container configuration.
+     * @return the image pull policy.
+     */
+    public static ImagePullPolicy createPullPolicy(ContainerConfig config) {
+        switch (config.imagePull) {
+            case ALWAYS:
+                return PullPolicy.alwaysPull();
+            case MAX_AGE:
+                return PullPolicy.ageBased(config.imagePullDuration);
+            default:
+                return PullPolicy.defaultPolicy();
+        }
+    }
+
     protected TestGenericContainer createContainer(Network network, ContainerConfig config, Path dir) {
 
         try (TestGenericContainer result = new TestGenericContainer(config.image)) {
@@ -147,22 +444,67 @@ public class DockerComposeService {
                 String[] cmd = config.command.toArray(new String[0]);
                 result.withCommand(cmd);
             }
-            // image pull policy
-            switch ( config.imagePull) {
-                case ALWAYS:
-                    result.withImagePullPolicy(PullPolicy.alwaysPull());
-                    break;
-                case MAX_AGE:
-                    result.withImagePullPolicy(PullPolicy.ageBased(config.imagePullDuration));
-                    break;
-                case DEFAULT:
-                    result.withImagePullPolicy(PullPolicy.defaultPolicy());
+            // image pull policy, the built images exist only locally
+            result.withImagePullPolicy(config.build != null ? PullPolicy.defaultPolicy() : createPullPolicy(config));
+
+            // docker compose healthcheck
+            if (config.healthcheck != null) {
+                ContainerConfig.Healthcheck hc = config.healthcheck;
+                HealthCheck healthCheck = new HealthCheck()
+                        .withTest(hc.test)
+                        .withInterval(hc.interval.toNanos())
+                        .withRetries(hc.retries);
+                if (hc.timeout != null) {
+                    healthCheck.withTimeout(hc.timeout.toNanos());
+                }
+                if (hc.startPeriod != null) {
+                    healthCheck.withStartPeriod(hc.startPeriod.toNanos());
+                }
+                result.withCreateContainerCmdModifier(cmd -> cmd.withHealthcheck(healthCheck));
             }
 
-            // wait log rule
+            // docker compose resources and RAM backed storage
+            if (!config.tmpfs.isEmpty()) {
+                result.withTmpFs(config.tmpfs);
+            }
+            if (config.shmSize != null || config.memLimit != null || config.cpus != null || !config.ulimits.isEmpty()) {
+                result.withCreateContainerCmdModifier(cmd -> {
+                    HostConfig hostConfig = cmd.getHostConfig();
+                    if (config.shmSize != null) {
+                        hostConfig.withShmSize(config.shmSize);
+                    }
+                    if (config.memLimit != null) {
+                        hostConfig.withMemory(config.memLimit);
+                    }
+                    if (config.cpus != null) {
+                        hostConfig.withNanoCPUs((long) (config.cpus * 1_000_000_000L));
+                    }
+                    if (!config.ulimits.isEmpty()) {
+                        hostConfig.withUlimits(config.ulimits.entrySet().stream()
+                                .map(e -> new Ulimit(e.getKey(), e.getValue()[0], e.getValue()[1]))
+                                .collect(Collectors.toList()));
+                    }
+                });
+            }
+
+            // wait strategies, the log rule and the readiness probes are combined
+            List<WaitStrategy> strategies = new ArrayList<>();
             if (config.waitLogRegex != null) {
-                result.waitingFor(Wait.forLogMessage(config.waitLogRegex, config.waitLogTimes));
+                strategies.add(Wait.forLogMessage(config.waitLogRegex, config.waitLogTimes));
+            }
+            ReadinessWaitStrategy readiness = ReadinessWaitStrategy.create(config);
+            if (readiness != null) {
+                strategies.add(readiness);
+            }
+            if (strategies.size() == 1) {
+                result.waitingFor(strategies.get(0));
+            } else if (strategies.size() > 1) {
+                WaitAllStrategy all = new WaitAllStrategy().withStartupTimeout(config.waitTimeout);
+                strategies.forEach(all::withStrategy);
+                result.waitingFor(all);
             }
+            // the startup timeout of the label test.Wait.timeout
+            result.withStartupTimeout(config.waitTimeout);
 
             // update log flag
             if (config.log) {
@@ -173,14 +515,17 @@ public class DockerComposeService {
             config.environments.forEach(result::withEnv);
 
             // volumes
+            Map<String, Path> cacheVolumes = new HashMap<>();
             config.volumes.forEach((k, v) -> {
                 String key = k;
                 if (key.startsWith("./")) {
                     key = key.substring(1);
                 }
                 MountableFile mf;
+                boolean jar = false;
                 try {
                     mf = MountableFile.forClasspathResource(key);
+                    jar = isJarResource(key);
                     System.out.printf("[tkit-quarkus-test] Service: '%s' find volume path in classpath: %s%n", config.name, key);
                 } catch (Exception ex) {
                     System.err.printf("[tkit-quarkus-test] Service: '%s' could not find volume path in classpath: %s%n", config.name, key);
@@ -201,12 +546,44 @@ public class DockerComposeService {
                     System.err.printf("[tkit-quarkus-test] Service: '%s' find volume path `%s` in system `%s`%n", config.name, k,path);
                 }
 
-                result.withCopyFileToContainer(mf, v);
+                Path hostPath = Paths.get(mf.getResolvedPath());
+                volumePaths.put(v, hostPath);
+
+                ContainerConfig.VolumeMode mode = config.getVolumeMode(k);
+                if (mode != ContainerConfig.VolumeMode.COPY && jar) {
+                    System.out.printf("[tkit-quarkus-test] Service: '%s' volume %s is in the jar file, use the copy mode%n", config.name, key);
+                    mode = ContainerConfig.VolumeMode.COPY;
+                }
+                if (mode == ContainerConfig.VolumeMode.CACHE && !Files.isDirectory(hostPath)) {
+                    System.out.printf("[tkit-quarkus-test] Service: '%s' volume %s is not a directory, use the copy mode%n", config.name, key);
+                    mode = ContainerConfig.VolumeMode.COPY;
+                }
+                switch (mode) {
+                    case BIND:
+                        result.withFileSystemBind(hostPath.toString(), v, config.isReadWriteVolume(k) ? BindMode.READ_WRITE : BindMode.READ_ONLY);
+                        break;
+                    case CACHE:
+                        cacheVolumes.put(v, hostPath);
+                        break;
+                    default:
+                        result.withCopyFileToContainer(mf, v);
+                }
             });
+            // the cache volumes are created on start when the image is available
+            if (!cacheVolumes.isEmpty()) {
+                result.withCreateContainerCmdModifier(cmd -> {
+                    List<Bind> binds = new ArrayList<>();
+                    if (cmd.getHostConfig().getBinds() != null) {
+                        binds.addAll(Arrays.asList(cmd.getHostConfig().getBinds()));
+                    }
+                    cacheVolumes.forEach((v, p) -> binds.add(new Bind(VolumeCache.getOrCreate(config.name, config.image, p), new Volume(v), AccessMode.ro)));
+                    cmd.getHostConfig().withBinds(binds);
+                });
+            }
 
             // ports
             config.ports.values().stream().map(Integer::parseInt).forEach(result::addExposedPort);
-            if (config.fixedPorts) {
+            if (config.fixedPorts && !PortLease.isEnabled()) {
                 config.ports.forEach((key, value) -> result.withFixedExposedPort(Integer.parseInt(key), Integer.parseInt(value)));
             }
 
@@ -27,4 +27,12 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.TYPE)
 public @interface DockerComposeTest {
+
+    /**
+     * The services of the test class. The services are started with all their dependencies
+     * and added to the running docker test environment.
+     *
+     * @return the service names or empty array for all services.
+     */
+    String[] services() default {};
 }
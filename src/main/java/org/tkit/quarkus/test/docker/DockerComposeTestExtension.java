@@ -15,41 +15,126 @@
  */
 package org.tkit.quarkus.test.docker;
 
+import org.junit.jupiter.api.extension.AfterEachCallback;
 import org.junit.jupiter.api.extension.BeforeAllCallback;
 import org.junit.jupiter.api.extension.BeforeEachCallback;
 import org.junit.jupiter.api.extension.ExtensionContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class DockerComposeTestExtension implements BeforeAllCallback, BeforeEachCallback {
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.platform.commons.util.AnnotationUtils.findAnnotation;
+
+public class DockerComposeTestExtension implements BeforeAllCallback, BeforeEachCallback, AfterEachCallback {
 
     private static final Logger log = LoggerFactory.getLogger(DockerComposeTest.class);
 
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(DockerComposeTestExtension.class);
+
+    private static final String BINDING = "binding";
+
     @Override
     public void beforeAll(ExtensionContext context) {
         log.debug("Start docker compose test extension");
-        context.getRoot()
-                .getStore(ExtensionContext.Namespace.GLOBAL)
-                .getOrComputeIfAbsent(DockerComposeStore.class);
+        DockerComposeStore store = getStore(context);
+        // the test methods could run on the other threads, the store is bound to the test class
+        context.getStore(NAMESPACE).put(BINDING, new StoreBinding(store));
+        DockerTestEnvironment.setCurrent(store.environment);
+        List<String> services;
+        if (ServiceLifecycle.isEnabled()) {
+            services = new ArrayList<>(ServiceLifecycle.getServices(context.getRequiredTestClass()));
+        } else {
+            services = Arrays.asList(findAnnotation(context.getTestClass(), DockerComposeTest.class)
+                    .map(DockerComposeTest::services)
+                    .orElse(new String[0]));
+        }
+        store.start(services);
     }
 
 
     @Override
     public void beforeEach(ExtensionContext context) {
-        DockerComposeStore store = context.getRoot()
-                .getStore(ExtensionContext.Namespace.GLOBAL)
-                .getOrComputeIfAbsent(DockerComposeStore.class);
-        store.inject(context.getRequiredTestInstance());
+        StoreBinding binding = context.getStore(NAMESPACE).get(BINDING, StoreBinding.class);
+        DockerTestEnvironment.setCurrent(binding.store.environment);
+        binding.store.inject(context.getRequiredTestInstance());
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        StoreBinding binding = context.getStore(NAMESPACE).get(BINDING, StoreBinding.class);
+        // the concurrent test method on the other thread, the test class thread is cleared after the afterAll callbacks
+        if (binding != null && binding.thread != Thread.currentThread()) {
+            DockerTestEnvironment.clearCurrent(binding.store.environment);
+        }
+    }
+
+    /**
+     * Gets the store of the environment of the test class.
+     *
+     * @param context the extension context of the test class.
+     * @return the docker compose store.
+     */
+    private static DockerComposeStore getStore(ExtensionContext context) {
+        DockerComposeStore store;
+        switch (DockerTestEnvironment.Isolation.get()) {
+            case WORKER:
+                // the store of the worker thread is closed at the end of the test plan
+                store = context.getRoot().getStore(NAMESPACE)
+                        .getOrComputeIfAbsent("worker-" + Thread.currentThread().getName(), k -> new DockerComposeStore(true), DockerComposeStore.class);
+                break;
+            case CLASS:
+                // the store of the test class is closed after the test class
+                store = context.getStore(NAMESPACE)
+                        .getOrComputeIfAbsent("class", k -> new DockerComposeStore(true), DockerComposeStore.class);
+                break;
+            default:
+                store = context.getRoot()
+                        .getStore(ExtensionContext.Namespace.GLOBAL)
+                        .getOrComputeIfAbsent(DockerComposeStore.class);
+        }
+        return store;
+    }
+
+    /**
+     * The store of the test class. The close of the test class store after the afterAll callbacks removes
+     * the environment of the test class thread.
+     */
+    static class StoreBinding implements ExtensionContext.Store.CloseableResource {
+
+        private final DockerComposeStore store;
+
+        private final Thread thread = Thread.currentThread();
+
+        StoreBinding(DockerComposeStore store) {
+            this.store = store;
+        }
+
+        @Override
+        public void close() {
+            DockerTestEnvironment.clearCurrent(store.environment);
+        }
     }
 
     static class DockerComposeStore extends DockerComposeTestResource implements ExtensionContext.Store.CloseableResource {
 
         public DockerComposeStore() {
-            start();
+            this(false);
+        }
+
+        DockerComposeStore(boolean isolated) {
+            environment = new DockerTestEnvironment(isolated);
+        }
+
+        synchronized void start(List<String> services) {
+            environment.start(services);
         }
 
         @Override
         public void close() {
+            DockerTestEnvironment.clearCurrent(environment);
             environment.stop();
         }
     }
@@ -26,19 +26,50 @@ import java.util.stream.Collectors;
  */
 public class DockerComposeTestResource implements QuarkusTestResourceLifecycleManager{
 
+    /**
+     * The init argument with the comma separated list of the services to start.
+     */
+    public static final String ARG_SERVICES = "services";
+
+    /**
+     * The docker test environment kept alive across the restarts of the test resources.
+     */
+    private static DockerTestEnvironment keepAlive;
+
     /**
      * The docker test environment.
      */
     protected DockerTestEnvironment environment;
 
+    /**
+     * The services to start or empty list for the {@link DockerTestEnvironment#SYS_PROP_SERVICES}.
+     */
+    protected List<String> services = Collections.emptyList();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void init(Map<String, String> initArgs) {
+        String tmp = initArgs.get(ARG_SERVICES);
+        if (tmp != null) {
+            services = Arrays.stream(tmp.split(",")).map(String::trim).filter(n -> !n.isEmpty()).collect(Collectors.toList());
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public Map<String, String> start() {
-        environment = new DockerTestEnvironment();
-        environment.start();
-        return Collections.emptyMap();
+        environment = createEnvironment();
+        if (services.isEmpty()) {
+            environment.start();
+        } else {
+            environment.start(services);
+        }
+        // the configuration of the application
+        return environment.getProperties();
     }
 
     /**
@@ -46,9 +77,34 @@ public class DockerComposeTestResource implements QuarkusTestResourceLifecycleMa
      */
     @Override
     public void stop() {
+        if (environment == keepAlive) {
+            System.out.println("[tkit-quarkus-test] Keep the docker test environment running for the next start");
+            return;
+        }
         environment.stop();
     }
 
+    /**
+     * Creates the docker test environment or refresh the environment which is kept alive.
+     *
+     * @return the docker test environment.
+     */
+    private static DockerTestEnvironment createEnvironment() {
+        if (!DockerTestEnvironment.isKeepAlive()) {
+            return new DockerTestEnvironment();
+        }
+        synchronized (DockerComposeTestResource.class) {
+            if (keepAlive == null) {
+                keepAlive = new DockerTestEnvironment();
+                DockerTestEnvironment tmp = keepAlive;
+                Runtime.getRuntime().addShutdownHook(new Thread(tmp::stop, "tkit-docker-keep-alive"));
+            } else {
+                keepAlive.refresh();
+            }
+            return keepAlive;
+        }
+    }
+
     /**
      * Inject all {@link DockerComposeService} in the test class.
      * @param testInstance the test instance
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2020 tkit.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tkit.quarkus.test.docker;
+
+import org.eclipse.microprofile.config.spi.ConfigSource;
+
+import java.util.Map;
+
+/**
+ * The configuration source of the test properties of the running docker test environments.
+ * <p>
+ * The test thread with the isolated environment reads only the properties of its environment.
+ * The ordinal {@value #ORDINAL} is higher than the ordinal of the system properties.
+ */
+public class DockerTestConfigSource implements ConfigSource {
+
+    /**
+     * The ordinal of the configuration source.
+     */
+    public static final int ORDINAL = 450;
+
+    @Override
+    public Map<String, String> getProperties() {
+        return DockerTestEnvironment.findProperties();
+    }
+
+    @Override
+    public int getOrdinal() {
+        return ORDINAL;
+    }
+
+    @Override
+    public String getValue(String propertyName) {
+        return DockerTestEnvironment.findProperty(propertyName);
+    }
+
+    @Override
+    public String getName() {
+        return "tkit-docker-test-environment";
+    }
+}
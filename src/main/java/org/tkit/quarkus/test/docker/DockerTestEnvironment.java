@@ -21,13 +21,20 @@ import org.slf4j.LoggerFactory;
 import org.testcontainers.DockerClientFactory;
 import org.testcontainers.containers.Network;
 import org.testcontainers.shaded.org.yaml.snakeyaml.Yaml;
+import org.tkit.quarkus.test.docker.properties.PropertyResolver;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 
 /**
@@ -37,15 +44,83 @@ public class DockerTestEnvironment {
 
     public static final String SYS_PROP_TEST_INTEGRATION = "test.integration";
 
+    /**
+     * The comma separated list of the services to start. The services are started with all their dependencies.
+     * Default: all services.
+     */
+    public static final String SYS_PROP_SERVICES = "test.docker.services";
+
+    /**
+     * The number of the container log lines in the start error. Default: {@code 20}.
+     */
+    public static final String SYS_PROP_ERROR_LOG_LINES = "test.docker.error.log.lines";
+
+    /**
+     * Keep the environment running across the restarts of the test resources in the same JVM. Default: {@code false}.
+     */
+    public static final String SYS_PROP_KEEP_ALIVE = "test.docker.keep-alive";
+
+    /**
+     * The isolation of the environments of the {@link DockerComposeTest}: {@code none} one environment for all test classes,
+     * {@code worker} one environment per JUnit worker thread, {@code class} one environment per test class.
+     * Default: {@code none}.
+     */
+    public static final String SYS_PROP_ISOLATION = "test.docker.isolation";
+
+    /**
+     * Publish the test properties of the services as system properties. Default: {@code false}, the properties are
+     * published by the {@link DockerTestConfigSource} and the result of the {@link DockerComposeTestResource#start()}.
+     */
+    public static final String SYS_PROP_SYSTEM_PROPERTIES = "test.docker.properties.system";
+
     private static final Logger log = LoggerFactory.getLogger(DockerTestEnvironment.class);
 
-    private Map<String, DockerComposeService> containers = new HashMap<>();
+    private static final ThreadLocal<DockerTestEnvironment> CURRENT = new ThreadLocal<>();
 
-    private Map<Integer, List<DockerComposeService>> containerProperties = new HashMap<>();
+    private final Map<String, DockerComposeService> containers = new ConcurrentHashMap<>();
+
+    private final Map<String, CompletableFuture<DockerComposeService>> startFutures = new ConcurrentHashMap<>();
+
+    private final Set<String> started = ConcurrentHashMap.newKeySet();
+
+    private final Set<String> starting = ConcurrentHashMap.newKeySet();
+
+    private ExecutorService executor;
 
     private Network network;
 
+    private ContainerReuse reuse;
+
+    private SharedEnvironment shared;
+
+    private ImagePrefetcher prefetcher;
+
+    private ContainerStopper stopper;
+
+    private StartupReport report = new StartupReport();
+
+    private File dockerComposeFile;
+
+    private boolean isolated;
+
+    private final PropertyResolver propertyResolver = new PropertyResolver(this);
+
+    private final Map<String, String> lazyProperties = new ConcurrentHashMap<>();
+
+    private final Set<String> staleProperties = ConcurrentHashMap.newKeySet();
+
     public DockerTestEnvironment() {
+        this(false);
+    }
+
+    /**
+     * Creates the environment of the default docker compose file.
+     *
+     * @param isolated the isolated environment publishes the test properties only to the environment
+     *                 and does not use fixed ports, the reuse and the shared environment.
+     */
+    public DockerTestEnvironment(boolean isolated) {
+        this.isolated = isolated;
         String dockerComposeFilePath = System.getProperty("test.docker.compose.file", "./src/test/resources/docker-compose.yml");
         File dockerComposeFile = new File(dockerComposeFilePath);
 
@@ -60,18 +135,226 @@ public class DockerTestEnvironment {
         load(new File(dockerComposeFile));
     }
 
+    /**
+     * The isolation of the environments.
+     */
+    public enum Isolation {
+        NONE, WORKER, CLASS;
+
+        /**
+         * Gets the isolation of the {@link #SYS_PROP_ISOLATION}.
+         *
+         * @return the isolation.
+         */
+        public static Isolation get() {
+            return valueOf(System.getProperty(SYS_PROP_ISOLATION, "none").trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Gets the environment of the current test thread.
+     *
+     * @return the environment or {@code null} if the thread has no environment.
+     */
+    public static DockerTestEnvironment current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Sets the environment of the current test thread.
+     *
+     * @param environment the environment.
+     */
+    static void setCurrent(DockerTestEnvironment environment) {
+        CURRENT.set(environment);
+    }
+
+    /**
+     * Removes the environment of the current test thread if the thread uses the environment.
+     *
+     * @param environment the environment.
+     */
+    static void clearCurrent(DockerTestEnvironment environment) {
+        if (CURRENT.get() == environment) {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * Gets the test property of the environment of the current test thread or the system property.
+     *
+     * @param key          the property key.
+     * @param defaultValue the default value.
+     * @return the property value.
+     */
+    public static String property(String key, String defaultValue) {
+        String value = findProperty(key);
+        return value != null ? value : System.getProperty(key, defaultValue);
+    }
+
+    /**
+     * Finds the test property in the environment of the current test thread or in all running environments.
+     *
+     * @param key the property key.
+     * @return the property value or {@code null} if no started service has the property.
+     */
+    static String findProperty(String key) {
+        DockerTestEnvironment environment = CURRENT.get();
+        if (environment != null) {
+            return environment.findLocalProperty(key);
+        }
+        for (DockerTestEnvironment e : ServiceLifecycle.getEnvironments()) {
+            String value = e.findLocalProperty(key);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the test properties of the environment of the current test thread or of all running environments.
+     *
+     * @return the map of the test properties.
+     */
+    static Map<String, String> findProperties() {
+        DockerTestEnvironment environment = CURRENT.get();
+        if (environment != null) {
+            return environment.getProperties();
+        }
+        Map<String, String> result = new HashMap<>();
+        ServiceLifecycle.getEnvironments().forEach(e -> e.getProperties().forEach(result::putIfAbsent));
+        return result;
+    }
+
+    /**
+     * Returns {@code true} if the test properties are published as system properties.
+     *
+     * @return {@code true} if the {@link #SYS_PROP_SYSTEM_PROPERTIES} is enabled.
+     */
+    public static boolean isSystemProperties() {
+        return Boolean.getBoolean(SYS_PROP_SYSTEM_PROPERTIES);
+    }
+
+    /**
+     * Gets the test property of the started services or the system property.
+     *
+     * @param key          the property key.
+     * @param defaultValue the default value.
+     * @return the property value.
+     */
+    public String getProperty(String key, String defaultValue) {
+        String value = findLocalProperty(key);
+        return value != null ? value : System.getProperty(key, defaultValue);
+    }
+
+    private String findLocalProperty(String key) {
+        for (String name : started) {
+            DockerComposeService service = containers.get(name);
+            String value = service != null ? service.getProperties().get(key) : null;
+            if (value != null) {
+                return value;
+            }
+        }
+        // the lazy property waits for the start of its service
+        String name = lazyProperties.get(key);
+        if (name != null && (started.contains(name) || starting.contains(name))) {
+            DockerComposeService service = awaitService(name);
+            return service != null ? service.getProperties().get(key) : null;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the test properties of all started services.
+     *
+     * @return the map of the test properties.
+     */
+    public Map<String, String> getProperties() {
+        Map<String, String> result = new HashMap<>();
+        started.stream().map(containers::get).filter(Objects::nonNull).forEach(s -> result.putAll(s.getProperties()));
+        return result;
+    }
+
+    /**
+     * Gets the property resolver with the memoized host and ports of the services.
+     *
+     * @return the property resolver.
+     */
+    public PropertyResolver getPropertyResolver() {
+        return propertyResolver;
+    }
+
+    public boolean isIsolated() {
+        return isolated;
+    }
+
     public DockerComposeService getService(String name) {
         return containers.get(name);
     }
 
+    /**
+     * Gets the start future of the service. The future is completed when the service is started.
+     *
+     * @param name the service name.
+     * @return the start future or {@code null} if the service does not exist.
+     */
+    public CompletableFuture<DockerComposeService> getStartFuture(String name) {
+        return startFutures.get(name);
+    }
+
+    /**
+     * Waits until the service is started.
+     *
+     * @param name the service name.
+     * @return the started service or {@code null} if the service does not exist.
+     */
+    public DockerComposeService awaitService(String name) {
+        CompletableFuture<DockerComposeService> future = startFutures.get(name);
+        if (future == null) {
+            return null;
+        }
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            throw unwrap(ex);
+        }
+    }
+
+    public StartupReport getStartupReport() {
+        return report;
+    }
+
+    public Collection<DockerComposeService> getServices() {
+        return containers.values();
+    }
+
     public Network getNetwork() {
         return network;
     }
 
     public void load(File dockerComposeFile) {
-        network = Network.newNetwork();
+        this.dockerComposeFile = dockerComposeFile;
+        report = new StartupReport();
+        // the isolated environments must not share the containers
+        reuse = isolated ? null : ContainerReuse.create(dockerComposeFile);
+        shared = isolated ? null : SharedEnvironment.create();
+        network = reuse != null ? reuse.createNetwork() : Network.newNetwork();
+        loadServices().forEach((k, service) -> {
+            containers.put(k, service);
+            startFutures.put(k, new CompletableFuture<>());
+        });
+        prefetcher = ImagePrefetcher.create(report);
+        if (prefetcher != null) {
+            // the images of the baked services are pulled by the start if the baked image does not exist
+            prefetcher.pull(containers.values().stream().filter(s -> s.getBake() == null).collect(Collectors.toList()));
+        }
+        stopper = ContainerStopper.create();
+    }
 
+    private Map<String, DockerComposeService> loadServices() {
         boolean integrationTest = Boolean.getBoolean(SYS_PROP_TEST_INTEGRATION);
+        Map<String, DockerComposeService> result = new HashMap<>();
 
         Yaml yaml = new Yaml();
 
@@ -84,40 +367,479 @@ public class DockerTestEnvironment {
                 data.forEach((k, v) -> {
                     ContainerConfig config = ContainerConfig.createContainerProperties(k, (Map<String, Object>) v);
                     if ((integrationTest && config.integrationTest) || (!integrationTest && config.unitTest)) {
-                        DockerComposeService service = DockerComposeService.createDockerComposeService(network, config, dir);
-                        containerProperties.computeIfAbsent(service.getConfig().priority, x -> new ArrayList<>()).add(service);
-                        containers.put(k, service);
+                        if (isolated && config.fixedPorts) {
+                            log.warn("The isolated environment ignores the fixed ports of the service {}", k);
+                            config.fixedPorts = false;
+                        }
+                        DockerComposeService service = createService(network, config, dir);
+                        service.setReuse(reuse);
+                        service.setIsolated(isolated);
+                        service.setBake(FixtureBake.create(service, dockerComposeFile));
+                        result.put(k, service);
                     }
                 });
             }
         } catch (IOException e) {
             log.warn("Failed to read YAML from {}", dockerComposeFile.getAbsolutePath(), e);
         }
+        return result;
     }
 
-    public void start() {
-        System.out.println("Docker client ping ...");
-        DockerClientFactory.instance().client().pingCmd().exec();
+    /**
+     * Creates the service of the docker compose file.
+     *
+     * @param network the network of the environment.
+     * @param config  the container configuration.
+     * @param dir     the directory of the docker compose file.
+     * @return the docker service.
+     */
+    DockerComposeService createService(Network network, ContainerConfig config, Path dir) {
+        return DockerComposeService.createDockerComposeService(network, config, dir);
+    }
+
+    /**
+     * Returns {@code true} if the environment is kept alive across the restarts of the test resources.
+     *
+     * @return {@code true} if the {@link #SYS_PROP_KEEP_ALIVE} is enabled.
+     */
+    public static boolean isKeepAlive() {
+        return Boolean.getBoolean(SYS_PROP_KEEP_ALIVE);
+    }
+
+    /**
+     * Reloads the docker compose file and replaces the services with changed configuration. The changed and removed
+     * services and the services with environment variables referencing them are stopped and started again by
+     * the next {@link #start(Collection)}. The other services keep running, their test properties referencing
+     * a restarted service are resolved again after the next start.
+     *
+     * @return the names of the changed, new, removed and restarted dependent services.
+     */
+    public synchronized Set<String> refresh() {
+        Map<String, DockerComposeService> services = loadServices();
+        Set<String> changed = new TreeSet<>();
+        services.forEach((name, service) -> {
+            DockerComposeService current = containers.get(name);
+            if (current == null || !current.getFingerprint().equals(service.getFingerprint())) {
+                changed.add(name);
+            }
+        });
+        containers.keySet().stream().filter(n -> !services.containsKey(n)).forEach(changed::add);
+        if (changed.isEmpty()) {
+            System.out.println("[tkit-quarkus-test] Docker test environment not changed");
+            return changed;
+        }
+        System.out.printf("[tkit-quarkus-test] Docker test environment changed services: %s%n", changed);
 
-        List<Integer> priorities = new ArrayList<>(containerProperties.keySet());
-        Collections.sort(priorities);
+        boolean integrationTest = Boolean.getBoolean(SYS_PROP_TEST_INTEGRATION);
+        // the services with environment variables of the restarted services need a new container
+        Set<String> restart = new TreeSet<>(changed);
+        boolean added = true;
+        while (added) {
+            added = false;
+            for (Map.Entry<String, DockerComposeService> e : services.entrySet()) {
+                ContainerConfig config = e.getValue().getConfig();
+                if (config != null && !restart.contains(e.getKey())
+                        && !Collections.disjoint(config.getEnvironmentReferencedServices(integrationTest), restart)) {
+                    restart.add(e.getKey());
+                    added = true;
+                }
+            }
+        }
+        if (restart.size() > changed.size()) {
+            System.out.printf("[tkit-quarkus-test] Docker test environment restart dependent services: %s%n", restart);
+        }
+        // the running services keep the container, but the test properties must be resolved again
+        services.forEach((name, service) -> {
+            ContainerConfig config = service.getConfig();
+            if (config != null && !restart.contains(name)
+                    && !Collections.disjoint(config.getReferencedServices(integrationTest), restart)) {
+                staleProperties.add(name);
+            }
+        });
+
+        List<String> stop = restart.stream().filter(started::contains).collect(Collectors.toList());
+        ExecutorService ex = getExecutor();
+        await(stop.stream().map(n -> CompletableFuture.runAsync(() -> {
+            System.out.printf("[tkit-quarkus-test] Service: '%s' stop, the configuration has changed%n", n);
+            containers.get(n).stop(integrationTest);
+        }, ex)).collect(Collectors.toList()));
+
+        for (String name : restart) {
+            started.remove(name);
+            if (prefetcher != null) {
+                prefetcher.remove(name);
+            }
+            DockerComposeService service = services.get(name);
+            if (service == null) {
+                containers.remove(name);
+                startFutures.remove(name);
+            } else {
+                containers.put(name, service);
+                startFutures.put(name, new CompletableFuture<>());
+            }
+        }
+        return restart;
+    }
+
+    /**
+     * Starts the services of the {@link #SYS_PROP_SERVICES} or all services of the environment.
+     */
+    public void start() {
+        String tmp = System.getProperty(SYS_PROP_SERVICES, "");
+        start(Arrays.stream(tmp.split(",")).map(String::trim).filter(n -> !n.isEmpty()).collect(Collectors.toList()));
+    }
 
+    /**
+     * Starts the services with all their dependencies. The services which are already started are not restarted,
+     * so the test classes can add the services they need to the running environment.
+     *
+     * @param services the service names or empty collection for all services.
+     */
+    public synchronized void start(Collection<String> services) {
         // integration tests
         boolean integrationTest = Boolean.getBoolean(SYS_PROP_TEST_INTEGRATION);
 
-        priorities.forEach(p -> {
-            List<DockerComposeService> services = containerProperties.get(p);
-            List<String> names = services.stream().map(DockerComposeService::getName).collect(Collectors.toList());
-            System.out.println(String.format("------------------------------\nStart test containers\npriority: %s\nServices: %s\nintegration test: %s\n------------------------------", p, names, integrationTest));
-            services.parallelStream().forEach(s -> s.start(this, integrationTest));
+        Set<String> names = services.isEmpty() ? containers.keySet()
+                : ServiceDependencyGraph.create(containers.values(), integrationTest).getClosure(services);
+        names = new TreeSet<>(names);
+        names.removeAll(started);
+        names.removeAll(starting);
+        if (names.isEmpty()) {
+            resolveStaleProperties(integrationTest);
+            return;
+        }
+
+        if (started.isEmpty() && starting.isEmpty()) {
+            ServiceLifecycle.register(this);
+            System.out.println("Docker client ping ...");
+            DockerClientFactory.instance().client().pingCmd().exec();
+
+            if (reuse != null) {
+                reuse.evictExpired();
+            }
+        }
+
+        if (shared != null) {
+            if (!services.isEmpty()) {
+                log.info("The shared docker test environment starts all services, ignore the services selection {}", services);
+            }
+            shared.start(this, integrationTest);
+        } else {
+            startServices(names, integrationTest);
+        }
+        resolveStaleProperties(integrationTest);
+    }
+
+    /**
+     * Resolves again the test properties of the running services which reference a service restarted
+     * by the {@link #refresh()}.
+     *
+     * @param integrationTest the integration test flag.
+     */
+    private void resolveStaleProperties(boolean integrationTest) {
+        for (String name : new ArrayList<>(staleProperties)) {
+            staleProperties.remove(name);
+            DockerComposeService service = containers.get(name);
+            if (service != null && started.contains(name)) {
+                service.resolveProperties(this, integrationTest);
+            }
+        }
+    }
+
+    /**
+     * Starts all services of the environment.
+     *
+     * @param integrationTest the integration test flag.
+     */
+    void startServices(boolean integrationTest) {
+        startServices(containers.keySet(), integrationTest);
+    }
+
+    /**
+     * Starts the services. The dependencies of the services must be started or part of the names.
+     *
+     * @param names           the service names.
+     * @param integrationTest the integration test flag.
+     */
+    void startServices(Set<String> names, boolean integrationTest) {
+        List<DockerComposeService> services = containers.values().stream()
+                .filter(s -> names.contains(s.getName()) || started.contains(s.getName()))
+                .collect(Collectors.toList());
+        ServiceDependencyGraph graph = ServiceDependencyGraph.create(services, integrationTest);
+        List<String> order = graph.getStartOrder();
+        order.removeIf(n -> !names.contains(n));
+        // the service is started when its future completes
+        starting.addAll(order);
+        String deps = order.stream().map(n -> n + " <- " + graph.getDependencies(n)).collect(Collectors.joining("\n"));
+        System.out.println(String.format("------------------------------\nStart test containers\nServices:\n%s\nintegration test: %s\n------------------------------", deps, integrationTest));
+
+        // start the baked services from the baked image
+        order.stream().map(containers::get).map(DockerComposeService::getBake).filter(Objects::nonNull).forEach(FixtureBake::apply);
+
+        // the pull of the images of the baked, refreshed and failed services
+        if (prefetcher != null) {
+            prefetcher.pull(order.stream().map(containers::get)
+                    .filter(s -> s.getBake() == null || !s.getBake().isBaked())
+                    .collect(Collectors.toList()));
+        }
+
+        // start every service as soon as all its dependencies are started and the start budget allows it
+        StartScheduler scheduler = StartScheduler.create(getExecutor());
+        Map<String, Throwable> errors = new ConcurrentHashMap<>();
+        CompletableFuture<Void> failure = new CompletableFuture<>();
+        order.forEach(name -> {
+            DockerComposeService service = containers.get(name);
+            // wait for the dependencies and the image of the service
+            List<CompletableFuture<?>> dependencies = graph.getDependencies(name).stream()
+                    .map(startFutures::get)
+                    .collect(Collectors.toList());
+            if (prefetcher != null) {
+                dependencies.add(prefetcher.getFuture(name));
+            }
+            CompletableFuture<DockerComposeService> future = startFutures.get(name);
+            CompletableFuture.allOf(dependencies.toArray(new CompletableFuture[0]))
+                    .thenCompose(r -> scheduler.submit(service, () -> {
+                        try {
+                            service.start(this, integrationTest);
+                        } catch (RuntimeException ex) {
+                            // fail fast, the first error cancels all other starts
+                            errors.put(name, ex);
+                            failure.completeExceptionally(ex);
+                            scheduler.cancel();
+                            throw ex;
+                        }
+                    }))
+                    .whenComplete((r, e) -> {
+                        boolean current = starting.remove(name);
+                        if (e != null) {
+                            future.completeExceptionally(e);
+                            // pull errors of the images
+                            failure.completeExceptionally(e);
+                            scheduler.cancel();
+                        } else {
+                            // the start error removes the cancelled services
+                            if (current) {
+                                started.add(name);
+                            }
+                            future.complete(service);
+                        }
+                    });
+        });
+        scheduler.start();
+
+        // the services with only lazy properties continue the start in the background
+        Set<String> deferred = getDeferredServices(order, graph, integrationTest);
+        deferred.forEach(n -> containers.get(n).getConfig().getProperties(integrationTest).forEach(p -> lazyProperties.put(p.name, n)));
+        boolean background = false;
+        try {
+            List<CompletableFuture<DockerComposeService>> futures = order.stream()
+                    .filter(n -> !deferred.contains(n))
+                    .map(startFutures::get)
+                    .collect(Collectors.toList());
+            CompletableFuture.anyOf(CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])), failure).join();
+            if (!errors.isEmpty() || futures.stream().anyMatch(CompletableFuture::isCompletedExceptionally)) {
+                throw createStartError(order, errors, failure, scheduler);
+            }
+            if (!deferred.isEmpty()) {
+                System.out.printf("[tkit-quarkus-test] Services %s continue the start in the background%n", deferred);
+                background = true;
+                CompletableFuture.allOf(deferred.stream().map(startFutures::get).toArray(CompletableFuture[]::new))
+                        .whenComplete((r, e) -> {
+                            if (e != null) {
+                                log.error("Failed to start the services {} in the background", deferred, e);
+                            }
+                            scheduler.store();
+                            report.write(graph);
+                        });
+            }
+        } catch (CompletionException ex) {
+            throw createStartError(order, errors, failure, scheduler);
+        } finally {
+            if (!background) {
+                scheduler.store();
+                report.write(graph);
+            }
+        }
+    }
+
+    /**
+     * Gets the services with only lazy properties which are not a dependency of the other started services.
+     */
+    private Set<String> getDeferredServices(List<String> order, ServiceDependencyGraph graph, boolean integrationTest) {
+        if (shared != null) {
+            return Collections.emptySet();
+        }
+        Set<String> result = order.stream()
+                .filter(n -> containers.get(n).getConfig().isLazy(integrationTest))
+                .collect(Collectors.toCollection(HashSet::new));
+        order.stream().filter(n -> !result.contains(n)).collect(Collectors.toList())
+                .forEach(n -> result.removeAll(graph.getClosure(List.of(n))));
+        return result;
+    }
+
+    /**
+     * Cancel the start of the services, stop the started containers and create the aggregated error.
+     */
+    private DockerTestEnvironmentException createStartError(List<String> order, Map<String, Throwable> errors,
+                                                           CompletableFuture<Void> failure, StartScheduler scheduler) {
+        scheduler.cancel();
+        if (!scheduler.awaitRunning(Duration.ofSeconds(30))) {
+            log.warn("Timeout waiting for the cancelled container starts");
+        }
+        int lines = Integer.getInteger(SYS_PROP_ERROR_LOG_LINES, 20);
+        Map<String, String> states = new LinkedHashMap<>();
+        StringBuilder sb = new StringBuilder("Failed to start the docker test environment");
+        List<CompletableFuture<?>> stops = new ArrayList<>();
+        ExecutorService ex = getExecutor();
+        boolean integrationTest = Boolean.getBoolean(SYS_PROP_TEST_INTEGRATION);
+        for (String name : order) {
+            starting.remove(name);
+            DockerComposeService service = containers.get(name);
+            CompletableFuture<DockerComposeService> future = startFutures.get(name);
+            String state;
+            if (errors.containsKey(name)) {
+                state = "failed: " + errors.get(name).getMessage();
+            } else if (future.isDone() && !future.isCompletedExceptionally()) {
+                state = "started";
+            } else if (future.isCompletedExceptionally()) {
+                Throwable cause = future.handle((r, e) -> e).join();
+                while (cause instanceof CompletionException && cause.getCause() != null) {
+                    cause = cause.getCause();
+                }
+                state = "not started: " + cause.getMessage();
+            } else {
+                state = "cancelled";
+                future.completeExceptionally(new CancellationException("Start of the service '" + name + "' cancelled"));
+            }
+            states.put(name, state);
+            sb.append("\n  ").append(name).append(": ").append(state);
+            if (!"cancelled".equals(state)) {
+                service.getLastLogLines(lines).forEach(l -> sb.append("\n    | ").append(l));
+            }
+            // stop the created containers
+            if (service.getContainer() != null && service.getContainer().getContainerId() != null) {
+                stops.add(CompletableFuture.runAsync(() -> service.stop(integrationTest), ex));
+            }
+            started.remove(name);
+        }
+        try {
+            CompletableFuture.allOf(stops.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            log.warn("Failed to stop the containers of the failed start", e.getCause());
+        }
+        Throwable cause = errors.values().stream().findFirst()
+                .orElseGet(() -> failure.handle((r, e) -> e instanceof CompletionException ? e.getCause() : e).getNow(null));
+        DockerTestEnvironmentException result = new DockerTestEnvironmentException(sb.toString(), states, cause);
+        errors.values().stream().filter(e -> e != cause).forEach(result::addSuppressed);
+        return result;
+    }
+
+    /**
+     * Attach all services to the running containers of another test JVM.
+     *
+     * @param containerIds    the map of service name and container ID.
+     * @param integrationTest the integration test flag.
+     */
+    void attachServices(Map<String, String> containerIds, boolean integrationTest) {
+        ServiceDependencyGraph graph = ServiceDependencyGraph.create(containers.values(), integrationTest);
+        graph.getStartOrder().forEach(name -> {
+            DockerComposeService service = containers.get(name);
+            String id = containerIds.get(name);
+            if (id == null) {
+                throw new IllegalStateException("Missing container of the service '" + name + "' in the shared docker test environment");
+            }
+            service.attach(this, id, integrationTest);
+            started.add(name);
+            startFutures.get(name).complete(service);
+        });
+    }
+
+    /**
+     * Stops the started services which are not in the used services and not a dependency of a running used service.
+     * The stopped services are started again by the next {@link #start(Collection)} which needs them.
+     *
+     * @param used the services used by the pending test classes.
+     */
+    public synchronized void release(Set<String> used) {
+        if (shared != null || started.isEmpty()) {
+            return;
+        }
+        boolean integrationTest = Boolean.getBoolean(SYS_PROP_TEST_INTEGRATION);
+        List<DockerComposeService> services = containers.values().stream()
+                .filter(s -> started.contains(s.getName()))
+                .collect(Collectors.toList());
+        ServiceDependencyGraph graph = ServiceDependencyGraph.create(services, integrationTest);
+        Set<String> keep = new HashSet<>();
+        started.stream().filter(used::contains).forEach(n -> keep.addAll(graph.getClosure(List.of(n))));
+
+        List<String> names = new ArrayList<>(started);
+        names.removeAll(keep);
+        if (names.isEmpty()) {
+            return;
+        }
+        ExecutorService ex = getExecutor();
+        await(names.stream().map(n -> CompletableFuture.runAsync(() -> {
+            System.out.printf("[tkit-quarkus-test] Service: '%s' stop after the last test class%n", n);
+            containers.get(n).stop(integrationTest);
+        }, ex)).collect(Collectors.toList()));
+        names.forEach(n -> {
+            started.remove(n);
+            startFutures.put(n, new CompletableFuture<>());
         });
     }
 
     public void stop() {
+        ServiceLifecycle.unregister(this);
+
         // integration tests
         boolean integrationTest = Boolean.getBoolean(SYS_PROP_TEST_INTEGRATION);
 
-        containers.values().parallelStream().forEach(p -> p.stop(integrationTest));
+        if (prefetcher != null) {
+            prefetcher.close();
+        }
+        // the services started in the background are stopped with the others
+        starting.stream().map(startFutures::get).filter(Objects::nonNull).forEach(f -> f.handle((r, e) -> r).join());
+        ExecutorService ex = getExecutor();
+        try {
+            if (shared != null) {
+                // the last fork removes the shared containers
+                started.stream().map(containers::get).forEach(DockerComposeService::clearProperties);
+                shared.release(this);
+            } else {
+                stopper.stop(started.stream().map(containers::get).collect(Collectors.toList()), integrationTest, ex);
+            }
+        } finally {
+            started.clear();
+            propertyResolver.close();
+            ex.shutdown();
+            executor = null;
+        }
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = ContainerLifecycleExecutor.create(containers.size());
+        }
+        return executor;
+    }
+
+    private static void await(Collection<? extends CompletableFuture<?>> futures) {
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException ex) {
+            throw unwrap(ex);
+        }
+    }
+
+    private static RuntimeException unwrap(CompletionException ex) {
+        Throwable cause = ex.getCause();
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        return ex;
     }
 
 }
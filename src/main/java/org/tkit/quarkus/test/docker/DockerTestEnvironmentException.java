@@ -0,0 +1,51 @@
+/*
+ * Copyright 2020 tkit.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tkit.quarkus.test.docker;
+
+import java.util.Map;
+
+/**
+ * The aggregated start error of the docker test environment.
+ * <p>
+ * The message contains the state of every service of the start and the last log lines of the
+ * failed and started containers. The start errors of the services are added as suppressed exceptions.
+ */
+public class DockerTestEnvironmentException extends IllegalStateException {
+
+    private final Map<String, String> states;
+
+    /**
+     * The default constructor.
+     *
+     * @param message the error message.
+     * @param states  the map of service name and state.
+     * @param cause   the first start error.
+     */
+    public DockerTestEnvironmentException(String message, Map<String, String> states, Throwable cause) {
+        super(message, cause);
+        this.states = states;
+    }
+
+    /**
+     * Gets the state of the services.
+     *
+     * @return the map of service name and state.
+     */
+    public Map<String, String> getStates() {
+        return states;
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2020 tkit.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tkit.quarkus.test.docker;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.exception.NotFoundException;
+import com.github.dockerjava.api.model.Image;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.images.PullPolicy;
+import org.tkit.quarkus.test.WithDBDataExtension;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * The baked fixture image of the database service.
+ * <p>
+ * The service with the label {@code test.bake=true} imports the fixture files of the label {@code test.bake.data}
+ * by the db-import service once before the first import of the {@link WithDBDataExtension}, the application is started
+ * and the database schema is created by its migrations. A failed import only logs a warning, the service is not baked
+ * and the tests continue with the normal imports. The database container is committed
+ * to the local image {@code tkit-bake/<project>-<service>:<hash>}. The hash is created from the container configuration,
+ * the content of the volumes and the content of the fixture files. The next run starts the service from the baked image
+ * and the {@link WithDBDataExtension} skips the first import of the baked fixture files without the delete before insert.
+ * A changed hash builds a new image and removes the old images of the service.
+ * <p>
+ * The database data directory must not be a docker volume, the volumes are not part of the committed image.
+ * For example set {@code PGDATA=/var/lib/postgresql/bake} for the PostgreSQL image.
+ */
+public class FixtureBake {
+
+    /**
+     * Enable the baked fixture images of the services with the label {@code test.bake=true}. Default: {@code true}.
+     */
+    public static final String SYS_PROP_BAKE = "test.docker.bake";
+
+    /**
+     * The label of the baked image with the service key.
+     */
+    public static final String LABEL_BAKE = "org.tkit.quarkus.test.bake";
+
+    private static final Logger log = LoggerFactory.getLogger(FixtureBake.class);
+
+    private static final Set<String> PRESENT = Collections.synchronizedSet(new HashSet<>());
+
+    private static final Set<FixtureBake> PENDING = Collections.synchronizedSet(new LinkedHashSet<>());
+
+    private final DockerComposeService service;
+
+    private final String repository;
+
+    private final String tag;
+
+    private boolean baked;
+
+    FixtureBake(DockerComposeService service, String repository, String tag) {
+        this.service = service;
+        this.repository = repository;
+        this.tag = tag;
+    }
+
+    /**
+     * Creates the fixture bake of the service.
+     *
+     * @param service           the docker service.
+     * @param dockerComposeFile the docker compose file.
+     * @return the fixture bake or {@code null} if the bake is not enabled for the service.
+     */
+    public static FixtureBake create(DockerComposeService service, File dockerComposeFile) {
+        ContainerConfig config = service.getConfig();
+        if (!config.bake || service.getContainer() == null || !Boolean.parseBoolean(System.getProperty(SYS_PROP_BAKE, "true"))) {
+            return null;
+        }
+        String project = ContentHash.create().add("compose", dockerComposeFile.getAbsolutePath()).toHex().substring(0, 12);
+        // the configuration and the content of the volumes, for example the changed init scripts
+        ContentHash hash = ContentHash.create()
+                .add("service", service.getFingerprint());
+        config.bakeData.forEach(p -> hash.addPath(p, getPath(p)));
+        String name = (project + "-" + config.name).toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9._-]", "-");
+        return new FixtureBake(service, "tkit-bake/" + name, hash.toHex().substring(0, 16));
+    }
+
+    /**
+     * Returns {@code true} if the fixture file is part of the running baked database and was not imported yet.
+     * Only the first import of the file is skipped, the next imports of the tests are executed.
+     *
+     * @param path the fixture file path.
+     * @return {@code true} if the data of the file is present.
+     */
+    public static boolean consume(String path) {
+        return PRESENT.remove(path);
+    }
+
+    /**
+     * Marks the data of the fixture file as deleted, the next import of the file is executed.
+     *
+     * @param path the fixture file path.
+     */
+    public static void deleted(String path) {
+        PRESENT.remove(path);
+    }
+
+    /**
+     * Bakes the images of the started services which are not started from the baked image. The bake is done once
+     * before the first import of the {@link WithDBDataExtension}.
+     */
+    public static void bakePending() {
+        List<FixtureBake> bakes;
+        synchronized (PENDING) {
+            bakes = new ArrayList<>(PENDING);
+            PENDING.clear();
+        }
+        bakes.stream()
+                .filter(b -> b.service.getContainer() != null && b.service.getContainer().getContainerId() != null)
+                .forEach(FixtureBake::bake);
+    }
+
+    /**
+     * Gets the baked image name.
+     *
+     * @return the image name.
+     */
+    public String getImage() {
+        return repository + ":" + tag;
+    }
+
+    /**
+     * Returns {@code true} if the service is started from the baked image.
+     *
+     * @return {@code true} if the service uses the baked image.
+     */
+    public boolean isBaked() {
+        return baked;
+    }
+
+    /**
+     * Use the baked image for the service container if the image exists.
+     */
+    public void apply() {
+        try {
+            DockerClientFactory.instance().client().inspectImageCmd(getImage()).exec();
+        } catch (NotFoundException ex) {
+            System.out.printf("[tkit-quarkus-test] Service: '%s' baked image %s not found, bake before the first import%n", service.getName(), getImage());
+            PENDING.add(this);
+            return;
+        }
+        System.out.printf("[tkit-quarkus-test] Service: '%s' start from the baked image %s%n", service.getName(), getImage());
+        service.getContainer().setDockerImageName(getImage());
+        service.getContainer().withImagePullPolicy(PullPolicy.defaultPolicy());
+        baked = true;
+        PRESENT.addAll(service.getConfig().bakeData);
+    }
+
+    /**
+     * Imports the fixture files and commits the database container to the baked image.
+     */
+    public void bake() {
+        bake(p -> WithDBDataExtension.importData(p, false));
+    }
+
+    /**
+     * Imports the fixture files by the importer and commits the database container to the baked image.
+     * The import errors only log a warning, the database container is not committed.
+     *
+     * @param importer the importer of the fixture file.
+     */
+    void bake(Consumer<String> importer) {
+        if (baked || ((TestGenericContainer) service.getContainer()).isAttached()) {
+            return;
+        }
+        long start = System.nanoTime();
+        ContainerConfig config = service.getConfig();
+        for (String path : config.bakeData) {
+            try {
+                importer.accept(path);
+            } catch (Exception ex) {
+                log.warn("Failed to import the fixture {} of the service {}, the image {} is not baked", path, service.getName(), getImage(), ex);
+                return;
+            }
+            // the imported data is present, the import of the tests is skipped
+            PRESENT.add(path);
+        }
+        // the data is imported, the bake errors only disable the baked image for the next run
+        try {
+            commit();
+        } catch (Exception ex) {
+            log.warn("Failed to bake the image {} of the service {}", getImage(), service.getName(), ex);
+            return;
+        }
+        System.out.printf("[tkit-quarkus-test] Service: '%s' baked image %s created in %d ms%n",
+                service.getName(), getImage(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void commit() {
+        DockerClient client = DockerClientFactory.instance().client();
+        Map<String, String> labels = new HashMap<>();
+        labels.put(LABEL_BAKE, repository);
+        client.commitCmd(service.getContainer().getContainerId())
+                .withRepository(repository)
+                .withTag(tag)
+                .withLabels(labels)
+                .withPause(true)
+                .exec();
+        removeOldImages(client);
+    }
+
+    private void removeOldImages(DockerClient client) {
+        String image = getImage();
+        try {
+            List<Image> images = client.listImagesCmd().withLabelFilter(Collections.singletonMap(LABEL_BAKE, repository)).exec();
+            images.stream()
+                    .filter(i -> i.getRepoTags() == null || !Arrays.asList(i.getRepoTags()).contains(image))
+                    .map(Image::getId)
+                    .collect(Collectors.toSet())
+                    .forEach(id -> removeImage(client, id));
+        } catch (Exception ex) {
+            log.warn("Failed to remove the old baked images of {}", repository, ex);
+        }
+    }
+
+    private static void removeImage(DockerClient client, String id) {
+        // not forced, the image of the container of a concurrent test run is kept
+        try {
+            client.removeImageCmd(id).exec();
+        } catch (Exception ex) {
+            log.debug("Keep the baked image {} used by a container", id, ex);
+        }
+    }
+
+    private static Path getPath(String path) {
+        URL url = FixtureBake.class.getClassLoader().getResource(path);
+        if (url == null) {
+            log.warn("Missing baked fixture resource {} in the class-path", path);
+            return null;
+        }
+        try {
+            return Paths.get(url.toURI());
+        } catch (Exception ex) {
+            throw new IllegalStateException("Wrong URI format. " + url, ex);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2020 tkit.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tkit.quarkus.test.docker;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.exception.NotFoundException;
+import com.github.dockerjava.api.model.Image;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.images.builder.ImageFromDockerfile;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * The content-addressed image of the service with the docker compose {@code build}.
+ * <p>
+ * The image {@code tkit-build/<project>-<service>:<hash>} is built from the build context. The hash is created
+ * from the content of all files in the build context, the dockerfile and the build arguments. An existing local image
+ * with the same hash is used without build. A changed hash builds a new image and removes the old images of the service.
+ */
+public class ImageBuild {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageBuild.class);
+
+    private final ContainerConfig config;
+
+    private final Path context;
+
+    private final String repository;
+
+    private final String tag;
+
+    private boolean built;
+
+    private ImageBuild(ContainerConfig config, Path context, String repository, String tag) {
+        this.config = config;
+        this.context = context;
+        this.repository = repository;
+        this.tag = tag;
+    }
+
+    /**
+     * Creates the image build of the service.
+     *
+     * @param config the container configuration.
+     * @param dir    the directory of the docker compose file.
+     * @return the image build or {@code null} if the service has no docker compose {@code build}.
+     */
+    public static ImageBuild create(ContainerConfig config, Path dir) {
+        ContainerConfig.Build build = config != null ? config.build : null;
+        if (build == null) {
+            return null;
+        }
+        if (build.context.contains("://") || build.context.startsWith("git@")) {
+            throw new IllegalArgumentException("Not supported remote build context " + build.context + " of the service " + config.name);
+        }
+        Path context = dir.resolve(build.context).normalize();
+        if (!Files.isDirectory(context)) {
+            throw new IllegalArgumentException("Missing build context " + context + " of the service " + config.name);
+        }
+        String project = ContentHash.create().add("compose", dir.toAbsolutePath()).toHex().substring(0, 12);
+        String hash = ContentHash.create()
+                .add("dockerfile", build.dockerfile)
+                .add("args", build.args)
+                .addPath("context", context)
+                .addPath("dockerfile", context.resolve(build.dockerfile))
+                .toHex();
+        String name = (project + "-" + config.name).toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9._-]", "-");
+        return new ImageBuild(config, context, "tkit-build/" + name, hash.substring(0, 16));
+    }
+
+    /**
+     * Gets the built image name.
+     *
+     * @return the image name.
+     */
+    public String getImage() {
+        return repository + ":" + tag;
+    }
+
+    /**
+     * Returns {@code true} if the image is built or an existing image with the hash is used.
+     *
+     * @return {@code true} if the image exists.
+     */
+    public synchronized boolean isBuilt() {
+        return built;
+    }
+
+    /**
+     * Builds the image if the image with the hash does not exist. The next calls return immediately.
+     */
+    public synchronized void build() {
+        if (built) {
+            return;
+        }
+        DockerClient client = DockerClientFactory.instance().client();
+        try {
+            client.inspectImageCmd(getImage()).exec();
+            System.out.printf("[tkit-quarkus-test] Service: '%s' build context not changed, use the image %s%n", config.name, getImage());
+            built = true;
+            return;
+        } catch (NotFoundException ex) {
+            // build the image
+        }
+        long start = System.nanoTime();
+        System.out.printf("[tkit-quarkus-test] Service: '%s' build image %s from %s%n", config.name, getImage(), context);
+        try {
+            new ImageFromDockerfile(getImage(), false)
+                    .withFileFromPath(".", context)
+                    .withDockerfilePath(config.build.dockerfile)
+                    .withBuildArgs(config.build.args)
+                    .get();
+        } catch (Exception ex) {
+            throw new IllegalStateException("Error build the image " + getImage() + " of the service " + config.name, ex);
+        }
+        built = true;
+        System.out.printf("[tkit-quarkus-test] Service: '%s' image %s built in %d ms%n", config.name, getImage(), (System.nanoTime() - start) / 1_000_000);
+        removeOldImages(client);
+    }
+
+    private void removeOldImages(DockerClient client) {
+        String image = getImage();
+        try {
+            List<Image> images = client.listImagesCmd().withImageNameFilter(repository).exec();
+            images.stream()
+                    .filter(i -> i.getRepoTags() == null || !Arrays.asList(i.getRepoTags()).contains(image))
+                    .map(Image::getId)
+                    .collect(Collectors.toSet())
+                    .forEach(id -> removeImage(client, id));
+        } catch (Exception ex) {
+            log.warn("Failed to remove the old images of {}", repository, ex);
+        }
+    }
+
+    private static void removeImage(DockerClient client, String id) {
+        // not forced, the image of the container of a concurrent test run is kept
+        try {
+            client.removeImageCmd(id).exec();
+        } catch (Exception ex) {
+            log.debug("Keep the old image {} used by a container", id, ex);
+        }
+    }
+}
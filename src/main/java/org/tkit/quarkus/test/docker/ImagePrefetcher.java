@@ -0,0 +1,225 @@
+/*
+ * Copyright 2020 tkit.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tkit.quarkus.test.docker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.images.PullPolicy;
+import org.testcontainers.images.RemoteDockerImage;
+import org.testcontainers.utility.DockerImageName;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The concurrent pull of the docker images of the services.
+ * <p>
+ * The pulls start after the docker compose file is loaded, before the services are started. The failed pulls
+ * are submitted again by the next {@link #pull(Collection)}. The images are pulled with the
+ * {@link ContainerConfig.PullPolicy} of the service, the largest images first. The images of the services
+ * with the docker compose {@code build} are built by the {@link ImageBuild} concurrently with the pulls. The size of the images
+ * is stored in the {@code target/tkit-docker-images.properties} for the next run, images with unknown size
+ * are pulled first.
+ */
+public class ImagePrefetcher {
+
+    /**
+     * Enable the image prefetch. Default: {@code true}.
+     */
+    public static final String SYS_PROP_PREFETCH = "test.docker.pull.prefetch";
+
+    /**
+     * The maximum number of the concurrent image pulls. Default: {@code 4}.
+     */
+    public static final String SYS_PROP_PULL_THREADS = "test.docker.pull.threads";
+
+    private static final Logger log = LoggerFactory.getLogger(ImagePrefetcher.class);
+
+    private static final Path SIZES_FILE = Paths.get("target", "tkit-docker-images.properties");
+
+    private final Map<String, CompletableFuture<Void>> images = new HashMap<>();
+
+    private final Map<String, CompletableFuture<Void>> services = new ConcurrentHashMap<>();
+
+    private final Map<String, long[]> pulled = new ConcurrentHashMap<>();
+
+    private final Properties sizes = loadSizes();
+
+    private final StartupReport report;
+
+    private ExecutorService executor;
+
+    private ImagePrefetcher(StartupReport report) {
+        this.report = report;
+    }
+
+    /**
+     * Creates the image prefetcher.
+     *
+     * @param report the startup report.
+     * @return the image prefetcher or {@code null} if the prefetch is disabled.
+     */
+    public static ImagePrefetcher create(StartupReport report) {
+        if (!Boolean.parseBoolean(System.getProperty(SYS_PROP_PREFETCH, "true"))) {
+            return null;
+        }
+        return new ImagePrefetcher(report);
+    }
+
+    /**
+     * Gets the pull future of the service image.
+     *
+     * @param service the service name.
+     * @return the pull future.
+     */
+    public CompletableFuture<Void> getFuture(String service) {
+        return services.getOrDefault(service, CompletableFuture.completedFuture(null));
+    }
+
+    /**
+     * Removes the pull of the service, the next {@link #pull(Collection)} submits the service again.
+     *
+     * @param service the service name.
+     */
+    public void remove(String service) {
+        services.remove(service);
+    }
+
+    /**
+     * Shutdown the pull executor.
+     */
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            // the next pull creates a new executor
+            executor = null;
+        }
+    }
+
+    /**
+     * Starts the pull of the images of the services. Services which are already submitted are ignored.
+     *
+     * @param list the docker services.
+     */
+    public synchronized void pull(Collection<DockerComposeService> list) {
+        // the failed pulls are not cached, the retry pulls the image again
+        images.values().removeIf(CompletableFuture::isCompletedExceptionally);
+        services.values().removeIf(CompletableFuture::isCompletedExceptionally);
+        List<DockerComposeService> tmp = new ArrayList<>(list);
+        tmp.removeIf(s -> s.getConfig().image == null || s.getContainer() == null || services.containsKey(s.getName()));
+        if (tmp.isEmpty()) {
+            return;
+        }
+        tmp.sort(Comparator.comparingLong((DockerComposeService s) -> getSize(s.getConfig().image)).reversed());
+
+        if (executor == null) {
+            int threads = Integer.getInteger(SYS_PROP_PULL_THREADS, 4);
+            executor = Executors.newFixedThreadPool(threads, r -> {
+                Thread thread = new Thread(r, "tkit-docker-pull");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        for (DockerComposeService s : tmp) {
+            ContainerConfig config = s.getConfig();
+            ImageBuild build = s.getBuild();
+            CompletableFuture<Void> future = images.computeIfAbsent(config.image,
+                    k -> CompletableFuture.runAsync(() -> {
+                        if (build != null) {
+                            build(config, build);
+                        } else {
+                            pull(config);
+                        }
+                    }, executor));
+            // the image is already pulled, the container start does not need to check the registry again
+            services.put(s.getName(), future.thenRun(() -> {
+                long[] time = pulled.get(config.image);
+                report.service(s.getName()).record(build != null ? StartupReport.BUILD : StartupReport.PULL, time[0], time[1]);
+                s.getContainer().withImagePullPolicy(PullPolicy.defaultPolicy());
+            }));
+        }
+    }
+
+    private void build(ContainerConfig config, ImageBuild build) {
+        long start = System.nanoTime();
+        build.build();
+        pulled.computeIfAbsent(config.image, k -> new long[]{start, System.nanoTime()});
+    }
+
+    private void pull(ContainerConfig config) {
+        long start = System.nanoTime();
+        System.out.printf("[tkit-quarkus-test] Service: '%s' pull image %s%n", config.name, config.image);
+        try {
+            new RemoteDockerImage(DockerImageName.parse(config.image))
+                    .withImagePullPolicy(DockerComposeService.createPullPolicy(config))
+                    .get();
+        } catch (Exception ex) {
+            throw new IllegalStateException("Error pull the image " + config.image + " of the service " + config.name, ex);
+        }
+        long end = System.nanoTime();
+        System.out.printf("[tkit-quarkus-test] Service: '%s' image %s ready in %d ms%n", config.name, config.image, (end - start) / 1_000_000);
+        // all services with the same image share the pull
+        pulled.computeIfAbsent(config.image, k -> new long[]{start, end});
+        updateSize(config.image);
+    }
+
+    private long getSize(String image) {
+        synchronized (sizes) {
+            return Long.parseLong(sizes.getProperty(image, Long.toString(Long.MAX_VALUE)));
+        }
+    }
+
+    private void updateSize(String image) {
+        try {
+            Long size = DockerClientFactory.instance().client().inspectImageCmd(image).exec().getSize();
+            if (size != null) {
+                synchronized (sizes) {
+                    sizes.setProperty(image, size.toString());
+                    Files.createDirectories(SIZES_FILE.getParent());
+                    try (OutputStream out = Files.newOutputStream(SIZES_FILE)) {
+                        sizes.store(out, "tkit-quarkus-test docker image sizes");
+                    }
+                }
+            }
+        } catch (Exception ex) {
+            log.debug("Failed to update the size of the image {}", image, ex);
+        }
+    }
+
+    private static Properties loadSizes() {
+        Properties result = new Properties();
+        if (Files.exists(SIZES_FILE)) {
+            try (InputStream in = Files.newInputStream(SIZES_FILE)) {
+                result.load(in);
+            } catch (IOException ex) {
+                log.warn("Failed to read the image sizes {}", SIZES_FILE, ex);
+            }
+        }
+        return result;
+    }
+}
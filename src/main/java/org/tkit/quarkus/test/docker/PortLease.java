@@ -0,0 +1,227 @@
+/*
+ * Copyright 2020 tkit.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tkit.quarkus.test.docker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The host-wide lease of the host port of the fixed port services.
+ * <p>
+ * Every leased port holds the file lock of the file {@code <port>.lock} in the shared lease directory.
+ * The compose host port is leased if it is free, otherwise a free port of the lease range. The lock is released
+ * when the service is stopped, at the exit of the JVM or by the operating system when the owning process is dead,
+ * so the leases of the crashed builds do not need any cleanup. The lock files are kept in the directory.
+ */
+public class PortLease implements AutoCloseable {
+
+    /**
+     * Enable the port leasing of the services with the label {@code test.ports.fixed=true}. Default: {@code false}.
+     */
+    public static final String SYS_PROP_PORT_LEASE = "test.docker.port.lease";
+
+    /**
+     * The shared directory of the lease files. Default: {@code <java.io.tmpdir>/tkit-port-leases}.
+     */
+    public static final String SYS_PROP_PORT_LEASE_DIR = "test.docker.port.lease.dir";
+
+    /**
+     * The range of the leased ports if the compose host port is not free. Default: {@code 20000-29999}.
+     */
+    public static final String SYS_PROP_PORT_LEASE_RANGE = "test.docker.port.lease.range";
+
+    private static final Logger log = LoggerFactory.getLogger(PortLease.class);
+
+    private static final Set<PortLease> LEASES = ConcurrentHashMap.newKeySet();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> LEASES.forEach(PortLease::close), "tkit-port-lease"));
+    }
+
+    private final int port;
+
+    private final Path file;
+
+    private final FileChannel channel;
+
+    private final FileLock lock;
+
+    private PortLease(int port, Path file, FileChannel channel, FileLock lock) {
+        this.port = port;
+        this.file = file;
+        this.channel = channel;
+        this.lock = lock;
+    }
+
+    /**
+     * Returns {@code true} if the port leasing is enabled.
+     *
+     * @return {@code true} if the {@link #SYS_PROP_PORT_LEASE} is enabled.
+     */
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(SYS_PROP_PORT_LEASE);
+    }
+
+    /**
+     * Leases the host port for the service.
+     *
+     * @param service   the service name.
+     * @param preferred the preferred host port, the compose host port.
+     * @return the port lease.
+     * @throws IllegalStateException if no port of the lease range is free.
+     */
+    public static PortLease acquire(String service, int preferred) {
+        return acquire(service, preferred, true);
+    }
+
+    /**
+     * Leases the free host port of the lease range.
+     *
+     * @param name the name of the lease.
+     * @return the port lease.
+     * @throws IllegalStateException if no port of the lease range is free.
+     */
+    public static PortLease acquire(String name) {
+        return acquire(name, 0, false);
+    }
+
+    private static PortLease acquire(String service, int preferred, boolean hasPreferred) {
+        Path dir = Paths.get(System.getProperty(SYS_PROP_PORT_LEASE_DIR,
+                Paths.get(System.getProperty("java.io.tmpdir"), "tkit-port-leases").toString()));
+        int[] range = parseRange(System.getProperty(SYS_PROP_PORT_LEASE_RANGE, "20000-29999"));
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Error create the port lease directory " + dir, ex);
+        }
+        PortLease result;
+        // the leases of this JVM are checked and added atomically
+        synchronized (LEASES) {
+            result = hasPreferred ? tryAcquire(dir, preferred, service) : null;
+            if (result == null) {
+                // random start of the search reduces the contention of the concurrent builds
+                int size = range[1] - range[0] + 1;
+                int offset = ThreadLocalRandom.current().nextInt(size);
+                for (int i = 0; i < size && result == null; i++) {
+                    result = tryAcquire(dir, range[0] + (offset + i) % size, service);
+                }
+            }
+            if (result != null) {
+                LEASES.add(result);
+            }
+        }
+        if (result == null) {
+            throw new IllegalStateException("No free port in the lease range " + range[0] + "-" + range[1] + " for the service " + service);
+        }
+        if (hasPreferred && result.port != preferred) {
+            System.out.printf("[tkit-quarkus-test] Service: '%s' host port %d is leased, use the host port %d%n", service, preferred, result.port);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the leased host port.
+     *
+     * @return the host port.
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Releases the lease of the port.
+     */
+    @Override
+    public void close() {
+        synchronized (LEASES) {
+            if (!LEASES.remove(this)) {
+                return;
+            }
+            // the lock file is not deleted, the other processes could lock the deleted file
+            try {
+                lock.release();
+                channel.close();
+            } catch (IOException ex) {
+                log.debug("Failed to release the lease of the port {}", port, ex);
+            }
+        }
+    }
+
+    static int[] parseRange(String value) {
+        String[] tmp = value.split("-", 2);
+        int[] result = new int[]{Integer.parseInt(tmp[0].trim()), Integer.parseInt(tmp[tmp.length - 1].trim())};
+        if (result[0] < 1 || result[1] > 65535 || result[0] > result[1]) {
+            throw new IllegalArgumentException("Not valid port lease range: " + value);
+        }
+        return result;
+    }
+
+    private static PortLease tryAcquire(Path dir, int port, String service) {
+        Path file = dir.resolve(port + ".lock").toAbsolutePath();
+        // the file locks are owned by the process, closing a second channel of the file releases the lease of this JVM
+        if (LEASES.stream().anyMatch(l -> l.file.equals(file))) {
+            return null;
+        }
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock = channel.tryLock();
+            // the port could be used by a process without lease
+            if (lock != null && isFree(port)) {
+                channel.truncate(0);
+                channel.write(ByteBuffer.wrap((ProcessHandle.current().pid() + " " + service).getBytes(StandardCharsets.UTF_8)));
+                return new PortLease(port, file, channel, lock);
+            }
+        } catch (OverlappingFileLockException | IOException ex) {
+            // locked by another channel of this JVM or not accessible
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                log.debug("Failed to close the lease file {}", file, ex);
+            }
+        }
+        return null;
+    }
+
+    private static boolean isFree(int port) {
+        try (ServerSocket socket = new ServerSocket()) {
+            socket.setReuseAddress(false);
+            socket.bind(new InetSocketAddress(port));
+            return true;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+}
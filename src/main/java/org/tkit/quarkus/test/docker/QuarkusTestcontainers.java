@@ -34,4 +34,11 @@ public @interface QuarkusTestcontainers {
      * @return {@code true} if the integration test are activated.
      */
     boolean integrationTest() default true;
+
+    /**
+     * The services of the test class. The services are started with all their dependencies.
+     *
+     * @return the service names or empty array for all services.
+     */
+    String[] services() default {};
 }
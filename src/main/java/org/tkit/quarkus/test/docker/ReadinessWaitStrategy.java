@@ -0,0 +1,239 @@
+/*
+ * Copyright 2020 tkit.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tkit.quarkus.test.docker;
+
+import com.github.dockerjava.api.command.HealthState;
+import com.github.dockerjava.api.command.InspectContainerResponse;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.Container;
+import org.testcontainers.containers.ContainerLaunchException;
+import org.testcontainers.containers.ExecInContainerPattern;
+import org.testcontainers.containers.wait.strategy.AbstractWaitStrategy;
+import org.testcontainers.containers.wait.strategy.WaitStrategyTarget;
+
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The wait strategy which polls the readiness probes of the container with a configurable interval.
+ * <p>
+ * Supported probes are the docker healthcheck status, open TCP port and HTTP status of the path.
+ * The container is ready when all probes succeeded. The TCP port is checked inside the container and from the host,
+ * the docker proxy of the mapped port accepts the connections before the service listens.
+ */
+public class ReadinessWaitStrategy extends AbstractWaitStrategy {
+
+    private final List<Probe> probes = new ArrayList<>();
+
+    private final Duration pollInterval;
+
+    private ReadinessWaitStrategy(Duration pollInterval) {
+        this.pollInterval = pollInterval;
+    }
+
+    /**
+     * Creates the readiness wait strategy for the container configuration.
+     *
+     * @param config the container configuration.
+     * @return the wait strategy or {@code null} if the container has no readiness probes.
+     */
+    public static ReadinessWaitStrategy create(ContainerConfig config) {
+        ReadinessWaitStrategy result = new ReadinessWaitStrategy(config.waitPollInterval);
+        if (config.healthcheck != null && config.waitHealthcheck) {
+            result.probes.add(new HealthcheckProbe());
+        }
+        config.waitPorts.forEach(p -> result.probes.add(new PortProbe(p, config.waitPollInterval)));
+        if (config.waitHttpPath != null) {
+            result.probes.add(new HttpProbe(config.waitHttpPort, config.waitHttpPath, config.waitHttpStatus));
+        }
+        if (result.probes.isEmpty()) {
+            return null;
+        }
+        return result;
+    }
+
+    @Override
+    protected void waitUntilReady() {
+        long end = System.nanoTime() + startupTimeout.toNanos();
+        List<Probe> pending = new ArrayList<>(probes);
+        while (true) {
+            pending.removeIf(p -> p.isReady(waitStrategyTarget));
+            if (pending.isEmpty()) {
+                return;
+            }
+            if (System.nanoTime() > end) {
+                throw new ContainerLaunchException("Timed out waiting for the container readiness probes: "
+                        + pending.stream().map(Probe::toString).collect(Collectors.joining(", ")));
+            }
+            try {
+                Thread.sleep(pollInterval.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ContainerLaunchException("Interrupted waiting for the container readiness probes", e);
+            }
+        }
+    }
+
+    /**
+     * The readiness probe.
+     */
+    interface Probe {
+
+        /**
+         * Returns {@code true} if the container is ready.
+         *
+         * @param target the wait strategy target.
+         * @return {@code true} if the container is ready.
+         */
+        boolean isReady(WaitStrategyTarget target);
+    }
+
+    /**
+     * The docker healthcheck probe.
+     */
+    static class HealthcheckProbe implements Probe {
+
+        @Override
+        public boolean isReady(WaitStrategyTarget target) {
+            InspectContainerResponse info = DockerClientFactory.instance().client().inspectContainerCmd(target.getContainerId()).exec();
+            HealthState health = info.getState().getHealth();
+            if (health == null) {
+                return false;
+            }
+            if ("unhealthy".equals(health.getStatus())) {
+                throw new ContainerLaunchException("Container healthcheck status is unhealthy");
+            }
+            return "healthy".equals(health.getStatus());
+        }
+
+        @Override
+        public String toString() {
+            return "healthcheck";
+        }
+    }
+
+    /**
+     * The TCP port probe.
+     */
+    static class PortProbe implements Probe {
+
+        private final int port;
+
+        private final int timeout;
+
+        private volatile boolean internal = true;
+
+        PortProbe(int port, Duration pollInterval) {
+            this.port = port;
+            this.timeout = (int) Math.max(100, Math.min(1000, pollInterval.toMillis()));
+        }
+
+        @Override
+        public boolean isReady(WaitStrategyTarget target) {
+            return isListening(target) && isOpen(target);
+        }
+
+        /**
+         * Checks the listening socket inside the container, the same check as the Testcontainers host port wait strategy.
+         */
+        private boolean isListening(WaitStrategyTarget target) {
+            if (!internal) {
+                return true;
+            }
+            String cmd = String.format("cat /proc/net/tcp* | awk '{print $2}' | grep -i ':0*%x'", port)
+                    + String.format(" || nc -vz -w 1 localhost %d", port)
+                    + String.format(" || /bin/bash -c '</dev/tcp/localhost/%d'", port);
+            try {
+                Container.ExecResult result = ExecInContainerPattern.execInContainer(target.getContainerInfo(), "/bin/sh", "-c", cmd);
+                return result.getExitCode() == 0;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new ContainerLaunchException("Interrupted waiting for the container readiness probes", ex);
+            } catch (Exception ex) {
+                // the container without the shell, only the host check is possible
+                internal = false;
+                return true;
+            }
+        }
+
+        private boolean isOpen(WaitStrategyTarget target) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(target.getHost(), target.getMappedPort(port)), timeout);
+                return true;
+            } catch (Exception ex) {
+                return false;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "port " + port;
+        }
+    }
+
+    /**
+     * The HTTP status probe.
+     */
+    static class HttpProbe implements Probe {
+
+        private final Integer port;
+
+        private final String path;
+
+        private final int status;
+
+        HttpProbe(Integer port, String path, int status) {
+            this.port = port;
+            this.path = path.startsWith("/") ? path : "/" + path;
+            this.status = status;
+        }
+
+        @Override
+        public boolean isReady(WaitStrategyTarget target) {
+            List<Integer> exposed = target.getExposedPorts();
+            if (port == null && exposed.isEmpty()) {
+                throw new ContainerLaunchException("The container has no exposed port for the HTTP readiness probe " + path + ", set the label test.Wait.forHttp.port");
+            }
+            int p = port != null ? port : exposed.get(0);
+            HttpURLConnection connection = null;
+            try {
+                URL url = new URL("http://" + target.getHost() + ":" + target.getMappedPort(p) + path);
+                connection = (HttpURLConnection) url.openConnection();
+                connection.setConnectTimeout(1000);
+                connection.setReadTimeout(1000);
+                return connection.getResponseCode() == status;
+            } catch (Exception ex) {
+                return false;
+            } finally {
+                if (connection != null) {
+                    connection.disconnect();
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "http " + path + " status " + status;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2020 tkit.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tkit.quarkus.test.docker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * The start dependency graph of the docker services.
+ * <p>
+ * The edges of the graph are created from the docker compose {@code depends_on}
+ * and from the {@code $${host:..}}, {@code $${port:..}} and {@code $${url:..}} references
+ * in the test properties and environment variables of the service. A service without
+ * any of these dependencies waits for all services with a lower {@code test.priority}.
+ */
+public class ServiceDependencyGraph {
+
+    private static final Logger log = LoggerFactory.getLogger(ServiceDependencyGraph.class);
+
+    private final Map<String, Set<String>> dependencies = new LinkedHashMap<>();
+
+    private final Map<String, Set<String>> references = new HashMap<>();
+
+    private ServiceDependencyGraph() {
+    }
+
+    /**
+     * Creates the dependency graph for the services.
+     *
+     * @param services        the docker services.
+     * @param integrationTest the integration test flag.
+     * @return the dependency graph.
+     */
+    public static ServiceDependencyGraph create(Collection<DockerComposeService> services, boolean integrationTest) {
+        Map<String, ContainerConfig> configs = new TreeMap<>();
+        services.forEach(s -> configs.put(s.getName(), s.getConfig()));
+
+        ServiceDependencyGraph graph = new ServiceDependencyGraph();
+        configs.forEach((name, config) -> {
+            Set<String> tmp = new TreeSet<>(config.dependsOn);
+            tmp.addAll(config.getReferencedServices(integrationTest));
+            tmp.remove(name);
+
+            Set<String> deps = new TreeSet<>();
+            tmp.forEach(d -> {
+                if (configs.containsKey(d)) {
+                    deps.add(d);
+                } else {
+                    log.warn("Service '{}' depends on the service '{}' which is not part of the test environment", name, d);
+                }
+            });
+
+            graph.references.put(name, new TreeSet<>(deps));
+
+            // fallback to the priority order
+            if (deps.isEmpty()) {
+                configs.forEach((n, c) -> {
+                    if (c.priority < config.priority) {
+                        deps.add(n);
+                    }
+                });
+            }
+            graph.dependencies.put(name, deps);
+        });
+        return graph;
+    }
+
+    /**
+     * Gets the direct dependencies of the service.
+     *
+     * @param name the service name.
+     * @return the set of service names.
+     */
+    public Set<String> getDependencies(String name) {
+        return dependencies.getOrDefault(name, Collections.emptySet());
+    }
+
+    /**
+     * Gets the services with all their transitive {@code depends_on} and {@code $${..}} dependencies.
+     * The {@code test.priority} fallback is only the start order and does not add services to the closure.
+     *
+     * @param names the service names.
+     * @return the set of service names.
+     * @throws IllegalArgumentException if a service is not part of the graph.
+     */
+    public Set<String> getClosure(Collection<String> names) {
+        Set<String> result = new TreeSet<>();
+        Deque<String> queue = new ArrayDeque<>(names);
+        while (!queue.isEmpty()) {
+            String name = queue.pop();
+            if (!dependencies.containsKey(name)) {
+                throw new IllegalArgumentException("Service '" + name + "' is not part of the test environment");
+            }
+            if (result.add(name)) {
+                queue.addAll(references.get(name));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the service names in the start order. Every service is after all its dependencies.
+     *
+     * @return the list of service names.
+     * @throws IllegalStateException if the graph contains a cycle.
+     */
+    public List<String> getStartOrder() {
+        List<String> result = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        Deque<String> path = new ArrayDeque<>();
+        dependencies.keySet().forEach(name -> visit(name, visited, path, result));
+        return result;
+    }
+
+    private void visit(String name, Set<String> visited, Deque<String> path, List<String> result) {
+        if (visited.contains(name)) {
+            return;
+        }
+        if (path.contains(name)) {
+            List<String> tmp = new ArrayList<>(path);
+            Collections.reverse(tmp);
+            List<String> cycle = new ArrayList<>(tmp.subList(tmp.indexOf(name), tmp.size()));
+            cycle.add(name);
+            throw new IllegalStateException("Cyclic dependency between the docker services: " + String.join(" -> ", cycle));
+        }
+        path.push(name);
+        getDependencies(name).forEach(d -> visit(d, visited, path, result));
+        path.pop();
+        visited.add(name);
+        result.add(name);
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2020 tkit.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tkit.quarkus.test.docker;
+
+import io.quarkus.test.junit.NativeImageTest;
+import io.quarkus.test.junit.QuarkusTest;
+
+import java.lang.reflect.Field;
+import java.util.*;
+
+import static org.junit.platform.commons.util.AnnotationUtils.findAnnotation;
+
+/**
+ * The test plan aware lifecycle of the docker services.
+ * <p>
+ * The {@link ServiceLifecycleListener} registers the test classes of the test plan with the services they use.
+ * The services of the test class are the {@link DockerComposeTest#services()}, {@link QuarkusTestcontainers#services()}
+ * and the {@link DockerService} fields. A {@code @QuarkusTest}, {@code @NativeImageTest} or docker test class without
+ * any services uses all services, other test classes do not use the services. The service is stopped
+ * as soon as all test classes which use the service are finished and no running service depends on it.
+ */
+public final class ServiceLifecycle {
+
+    /**
+     * Enable the test plan aware lifecycle of the services. Default: {@code false}.
+     */
+    public static final String SYS_PROP_LIFECYCLE = "test.docker.lifecycle";
+
+    private static final Map<String, Set<String>> CLASSES = new HashMap<>();
+
+    private static final Set<DockerTestEnvironment> ENVIRONMENTS = new LinkedHashSet<>();
+
+    private ServiceLifecycle() {
+    }
+
+    /**
+     * Returns {@code true} if the test plan aware lifecycle is enabled.
+     *
+     * @return {@code true} if the lifecycle is enabled.
+     */
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(SYS_PROP_LIFECYCLE);
+    }
+
+    /**
+     * Gets the services of the test class.
+     *
+     * @param clazz the test class.
+     * @return the set of service names or empty set for all services.
+     */
+    public static Set<String> getServices(Class<?> clazz) {
+        Set<String> result = new TreeSet<>();
+        findAnnotation(clazz, DockerComposeTest.class).ifPresent(a -> result.addAll(Arrays.asList(a.services())));
+        findAnnotation(clazz, QuarkusTestcontainers.class).ifPresent(a -> result.addAll(Arrays.asList(a.services())));
+        for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+            for (Field f : c.getDeclaredFields()) {
+                DockerService ds = f.getAnnotation(DockerService.class);
+                if (ds != null && !ds.value().isEmpty()) {
+                    result.add(ds.value());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns {@code true} if the test class uses the docker test environment.
+     *
+     * @param clazz the test class.
+     * @return {@code true} if the test class uses the docker services.
+     */
+    public static boolean isConsumer(Class<?> clazz) {
+        return findAnnotation(clazz, DockerComposeTest.class).isPresent()
+                || findAnnotation(clazz, QuarkusTestcontainers.class).isPresent()
+                || findAnnotation(clazz, QuarkusTest.class).isPresent()
+                || findAnnotation(clazz, NativeImageTest.class).isPresent()
+                || !getServices(clazz).isEmpty();
+    }
+
+    /**
+     * Register the test class of the test plan.
+     *
+     * @param clazz the test class.
+     */
+    static synchronized void plan(Class<?> clazz) {
+        if (isConsumer(clazz)) {
+            CLASSES.put(clazz.getName(), getServices(clazz));
+        }
+    }
+
+    /**
+     * Release the services which are not used by any pending test class.
+     *
+     * @param className the finished test class name.
+     */
+    static void finished(String className) {
+        Set<String> used = new HashSet<>();
+        List<DockerTestEnvironment> environments;
+        synchronized (ServiceLifecycle.class) {
+            if (CLASSES.remove(className) == null) {
+                return;
+            }
+            for (Set<String> services : CLASSES.values()) {
+                if (services.isEmpty()) {
+                    // pending test class uses all services
+                    return;
+                }
+                used.addAll(services);
+            }
+            environments = new ArrayList<>(ENVIRONMENTS);
+        }
+        environments.forEach(e -> e.release(used));
+    }
+
+    /**
+     * Clears the test plan.
+     */
+    static synchronized void clear() {
+        CLASSES.clear();
+    }
+
+    static synchronized void register(DockerTestEnvironment environment) {
+        ENVIRONMENTS.add(environment);
+    }
+
+    static synchronized List<DockerTestEnvironment> getEnvironments() {
+        return new ArrayList<>(ENVIRONMENTS);
+    }
+
+    static synchronized void unregister(DockerTestEnvironment environment) {
+        ENVIRONMENTS.remove(environment);
+    }
+}
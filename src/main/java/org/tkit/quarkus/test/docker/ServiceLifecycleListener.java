@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 tkit.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tkit.quarkus.test.docker;
+
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.engine.support.descriptor.ClassSource;
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.TestPlan;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The JUnit platform listener of the {@link ServiceLifecycle}. The listener maps the test classes
+ * of the test plan to the services and releases the services after the test class is finished.
+ * The listener is registered by the {@code META-INF/services} and is active only
+ * if the {@link ServiceLifecycle#SYS_PROP_LIFECYCLE} is enabled.
+ */
+public class ServiceLifecycleListener implements TestExecutionListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ServiceLifecycleListener.class);
+
+    @Override
+    public void testPlanExecutionStarted(TestPlan testPlan) {
+        if (!ServiceLifecycle.isEnabled()) {
+            return;
+        }
+        testPlan.getRoots().forEach(r -> plan(testPlan, r));
+    }
+
+    @Override
+    public void testPlanExecutionFinished(TestPlan testPlan) {
+        ServiceLifecycle.clear();
+    }
+
+    @Override
+    public void executionFinished(TestIdentifier testIdentifier, TestExecutionResult testExecutionResult) {
+        finished(testIdentifier);
+    }
+
+    @Override
+    public void executionSkipped(TestIdentifier testIdentifier, String reason) {
+        finished(testIdentifier);
+    }
+
+    private void plan(TestPlan testPlan, TestIdentifier identifier) {
+        identifier.getSource()
+                .filter(ClassSource.class::isInstance)
+                .map(ClassSource.class::cast)
+                .ifPresent(s -> {
+                    try {
+                        ServiceLifecycle.plan(s.getJavaClass());
+                    } catch (Exception ex) {
+                        log.warn("Failed to load the test class {}", s.getClassName(), ex);
+                    }
+                });
+        testPlan.getChildren(identifier).forEach(c -> plan(testPlan, c));
+    }
+
+    private void finished(TestIdentifier identifier) {
+        if (!ServiceLifecycle.isEnabled()) {
+            return;
+        }
+        identifier.getSource()
+                .filter(ClassSource.class::isInstance)
+                .map(ClassSource.class::cast)
+                .ifPresent(s -> ServiceLifecycle.finished(s.getClassName()));
+    }
+}
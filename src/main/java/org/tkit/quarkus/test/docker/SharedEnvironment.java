@@ -0,0 +1,323 @@
+/*
+ * Copyright 2020 tkit.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tkit.quarkus.test.docker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.utility.TestcontainersConfiguration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * The docker test environment shared by the Surefire/Failsafe forks.
+ * <p>
+ * The forks are coordinated by the lock file and the state file in the {@code target} directory.
+ * The first fork starts the containers and publishes the container IDs in the state file. The other forks attach
+ * to the running containers while at least one registered fork is alive, the first fork could leave before them.
+ * The containers published without a live fork are removed and a new environment is started. Every fork registers its process ID in the state file, the last fork which leaves
+ * the environment in the {@link #release(DockerTestEnvironment)} removes the containers by their IDs.
+ * <p>
+ * The containers of the first fork must survive its JVM, they are started as Testcontainers reusable containers.
+ * Without the Testcontainers reuse the first fork waits for the other forks before it leaves the environment.
+ */
+public class SharedEnvironment {
+
+    /**
+     * Share the docker test environment across the forks. Default: {@code false}.
+     */
+    public static final String SYS_PROP_SHARED = "test.docker.shared";
+
+    /**
+     * The directory of the lock and the state file. Default: {@code target}.
+     */
+    public static final String SYS_PROP_SHARED_DIR = "test.docker.shared.dir";
+
+    /**
+     * The maximum time the first fork waits for the other forks without the Testcontainers reuse. Default: {@code PT30M}.
+     */
+    public static final String SYS_PROP_SHARED_TIMEOUT = "test.docker.shared.timeout";
+
+    private static final Logger log = LoggerFactory.getLogger(SharedEnvironment.class);
+
+    private static final String OWNER = "owner";
+
+    private static final String FORKS = "forks";
+
+    private static final String SERVICE = "service.";
+
+    private static final String NETWORK = "network";
+
+    /**
+     * The label of the shared container with the ID of the shared environment.
+     */
+    public static final String LABEL_SHARED = "org.tkit.quarkus.test.shared";
+
+    private final Path lockFile;
+
+    private final Path stateFile;
+
+    private final Duration timeout;
+
+    private final long pid = ProcessHandle.current().pid();
+
+    private boolean owner;
+
+    private SharedEnvironment(Path dir, Duration timeout) {
+        this.lockFile = dir.resolve("tkit-docker-env.lock");
+        this.stateFile = dir.resolve("tkit-docker-env.properties");
+        this.timeout = timeout;
+    }
+
+    /**
+     * Creates the shared environment if the sharing is enabled.
+     *
+     * @return the shared environment or {@code null} if the sharing is disabled.
+     */
+    public static SharedEnvironment create() {
+        if (!Boolean.getBoolean(SYS_PROP_SHARED)) {
+            return null;
+        }
+        Path dir = Paths.get(System.getProperty(SYS_PROP_SHARED_DIR, "target"));
+        Duration timeout = Duration.parse(System.getProperty(SYS_PROP_SHARED_TIMEOUT, "PT30M"));
+        return new SharedEnvironment(dir, timeout);
+    }
+
+    /**
+     * Returns {@code true} if this fork started the containers.
+     *
+     * @return {@code true} if this fork started the containers.
+     */
+    public boolean isOwner() {
+        return owner;
+    }
+
+    /**
+     * Starts or attaches the docker test environment.
+     *
+     * @param environment     the docker test environment.
+     * @param integrationTest the integration test flag.
+     */
+    public void start(DockerTestEnvironment environment, boolean integrationTest) {
+        withLock(state -> {
+            Set<Long> forks = getForks(state);
+            forks.removeIf(p -> !isAlive(p));
+            Map<String, String> containers = getContainers(state);
+            // the owner could leave before the other forks, the environment is used while a fork is alive
+            if (!containers.isEmpty() && !forks.isEmpty()) {
+                log.info("Attach to the docker test environment of the fork {} used by the forks {}", state.getProperty(OWNER), forks);
+                environment.attachServices(containers, integrationTest);
+                owner = false;
+            } else {
+                // the containers of the previous run without a live fork
+                remove(containers, state.getProperty(NETWORK));
+                log.info("Start the shared docker test environment in the fork {}", pid);
+                state.clear();
+                forks.clear();
+                detach(environment);
+                environment.startServices(integrationTest);
+                state.setProperty(OWNER, Long.toString(pid));
+                publish(state, environment);
+                owner = true;
+            }
+            forks.add(pid);
+            setForks(state, forks);
+        });
+    }
+
+    /**
+     * Release the docker test environment. The last fork removes the containers by their IDs.
+     *
+     * @param environment the docker test environment.
+     */
+    public void release(DockerTestEnvironment environment) {
+        if (owner && !isDetached()) {
+            awaitForks();
+        }
+        Map<String, String> remove = new HashMap<>();
+        String[] network = new String[1];
+        withLock(state -> {
+            Set<Long> forks = getForks(state);
+            forks.remove(pid);
+            forks.removeIf(p -> !isAlive(p));
+            setForks(state, forks);
+            if (forks.isEmpty()) {
+                remove.putAll(getContainers(state));
+                network[0] = state.getProperty(NETWORK);
+                state.clear();
+            }
+        });
+        if (remove.isEmpty()) {
+            log.info("The shared docker test environment is still used by the other forks");
+            return;
+        }
+        remove(remove, network[0]);
+    }
+
+    /**
+     * Removes the shared containers and the network.
+     */
+    private static void remove(Map<String, String> containers, String network) {
+        // the reused containers are kept for the next run
+        if (containers.isEmpty() || Boolean.getBoolean(ContainerReuse.SYS_PROP_REUSE)) {
+            return;
+        }
+        containers.forEach((name, id) -> {
+            System.out.printf("[tkit-quarkus-test] Service: '%s' remove the shared container %s%n", name, id);
+            try {
+                DockerClientFactory.instance().client().removeContainerCmd(id)
+                        .withForce(true)
+                        .withRemoveVolumes(true)
+                        .exec();
+            } catch (Exception ex) {
+                log.warn("Failed to remove the shared container {} of the service {}", id, name, ex);
+            }
+        });
+        if (network != null) {
+            try {
+                DockerClientFactory.instance().client().removeNetworkCmd(network).exec();
+            } catch (Exception ex) {
+                log.warn("Failed to remove the shared network {}", network, ex);
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if the containers of the owner survive the JVM of the owner.
+     */
+    private static boolean isDetached() {
+        return TestcontainersConfiguration.getInstance().environmentSupportsReuse();
+    }
+
+    /**
+     * The containers of the owner are not removed by the Testcontainers at the end of the owner JVM.
+     */
+    private void detach(DockerTestEnvironment environment) {
+        if (!isDetached()) {
+            log.warn("Testcontainers reuse is not enabled, the first fork waits for the other forks at the end of the run. Set 'testcontainers.reuse.enable=true' in the ~/.testcontainers.properties");
+            return;
+        }
+        // unique configuration, the reusable containers of the other environments are not reused
+        String id = pid + "-" + System.currentTimeMillis();
+        environment.getServices().stream()
+                .filter(s -> s.getContainer() != null)
+                .forEach(s -> s.getContainer().withLabel(LABEL_SHARED, id).withReuse(true));
+    }
+
+    /**
+     * Waits until this fork is the last fork of the environment.
+     */
+    private void awaitForks() {
+        long end = System.currentTimeMillis() + timeout.toMillis();
+        while (true) {
+            boolean[] done = new boolean[1];
+            withLock(state -> {
+                Set<Long> forks = getForks(state);
+                forks.removeIf(p -> p != pid && !isAlive(p));
+                setForks(state, forks);
+                done[0] = forks.stream().allMatch(p -> p == pid);
+            });
+            if (done[0]) {
+                return;
+            }
+            if (System.currentTimeMillis() > end) {
+                log.warn("Timeout waiting for the forks using the shared docker test environment");
+                return;
+            }
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void publish(Properties state, DockerTestEnvironment environment) {
+        if (environment.getNetwork() != null) {
+            state.setProperty(NETWORK, environment.getNetwork().getId());
+        }
+        environment.getServices().forEach(s -> {
+            String id = s.getContainer().getContainerId();
+            if (id != null) {
+                state.setProperty(SERVICE + s.getName() + ".container", id);
+            }
+        });
+    }
+
+    private static Map<String, String> getContainers(Properties state) {
+        Map<String, String> result = new HashMap<>();
+        state.stringPropertyNames().stream()
+                .filter(k -> k.startsWith(SERVICE) && k.endsWith(".container"))
+                .forEach(k -> result.put(k.substring(SERVICE.length(), k.length() - ".container".length()), state.getProperty(k)));
+        return result;
+    }
+
+    private static Set<Long> getForks(Properties state) {
+        String tmp = state.getProperty(FORKS, "");
+        if (tmp.isEmpty()) {
+            return new HashSet<>();
+        }
+        return Arrays.stream(tmp.split(",")).map(Long::parseLong).collect(Collectors.toSet());
+    }
+
+    private static void setForks(Properties state, Set<Long> forks) {
+        state.setProperty(FORKS, forks.stream().map(String::valueOf).collect(Collectors.joining(",")));
+    }
+
+    private static boolean isAlive(long pid) {
+        return ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false);
+    }
+
+    private void withLock(Consumer<Properties> action) {
+        try {
+            Files.createDirectories(lockFile.getParent());
+            try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock lock = channel.lock()) {
+                Properties state = new Properties();
+                if (Files.exists(stateFile)) {
+                    try (InputStream in = Files.newInputStream(stateFile)) {
+                        state.load(in);
+                    }
+                }
+                action.accept(state);
+                if (state.isEmpty()) {
+                    Files.deleteIfExists(stateFile);
+                } else {
+                    try (OutputStream out = Files.newOutputStream(stateFile)) {
+                        state.store(out, "tkit-quarkus-test shared docker test environment");
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Error access the shared docker test environment state " + stateFile, ex);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2020 tkit.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tkit.quarkus.test.docker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * The admission control of the container starts.
+ * <p>
+ * The services which are ready to start (all dependencies are started) are queued and started when the budget
+ * of the concurrent starts and the memory is not exceeded. The queue is ordered by the start duration of the
+ * previous run, the slowest services first. The durations are stored in the file {@link #SYS_PROP_START_TIMES},
+ * services with unknown duration are started first. A service which exceeds the memory budget alone is started
+ * when no other service is starting. The {@link #cancel()} drops the queued starts and interrupts the running starts.
+ */
+public class StartScheduler {
+
+    /**
+     * The maximum number of the concurrent container starts. Default: number of the available processors.
+     */
+    public static final String SYS_PROP_START_CONCURRENCY = "test.docker.start.concurrency";
+
+    /**
+     * The memory budget of the concurrent container starts, for example {@code 4g}. The memory of the service
+     * is the docker compose {@code mem_limit}. Default: no limit.
+     */
+    public static final String SYS_PROP_START_MEMORY = "test.docker.start.memory";
+
+    /**
+     * The file of the start durations of the previous runs. Default: {@code target/tkit-docker-start-times.properties}
+     */
+    public static final String SYS_PROP_START_TIMES = "test.docker.start.times";
+
+    private static final Logger log = LoggerFactory.getLogger(StartScheduler.class);
+
+    private final Executor executor;
+
+    private final Path timesFile;
+
+    private final int concurrency;
+
+    private final long memory;
+
+    private final Properties history;
+
+    private final Map<String, Long> durations = new ConcurrentHashMap<>();
+
+    private final PriorityQueue<Task> queue = new PriorityQueue<>(
+            Comparator.comparingLong((Task t) -> t.duration).reversed().thenComparing(t -> t.name));
+
+    private final Set<Task> runningTasks = new HashSet<>();
+
+    private int running;
+
+    private long runningMemory;
+
+    private boolean started;
+
+    private boolean cancelled;
+
+    private StartScheduler(Executor executor, int concurrency, long memory, Path timesFile) {
+        this.executor = executor;
+        this.concurrency = Math.max(1, concurrency);
+        this.memory = memory;
+        this.timesFile = timesFile;
+        this.history = loadHistory(timesFile);
+    }
+
+    /**
+     * Creates the start scheduler.
+     *
+     * @param executor the executor of the container starts.
+     * @return the start scheduler.
+     */
+    public static StartScheduler create(Executor executor) {
+        int concurrency = Integer.getInteger(SYS_PROP_START_CONCURRENCY, Runtime.getRuntime().availableProcessors());
+        String tmp = System.getProperty(SYS_PROP_START_MEMORY);
+        long memory = tmp == null || tmp.isBlank() ? Long.MAX_VALUE : ContainerConfig.parseMemory(tmp);
+        Path timesFile = Paths.get(System.getProperty(SYS_PROP_START_TIMES, "target/tkit-docker-start-times.properties"));
+        return new StartScheduler(executor, concurrency, memory, timesFile);
+    }
+
+    /**
+     * Submit the start of the service. The start is queued until the {@link #start()} is called
+     * and the budget allows the start.
+     *
+     * @param service the docker service.
+     * @param task    the start task.
+     * @return the future which is completed when the task is finished.
+     */
+    public CompletableFuture<Void> submit(DockerComposeService service, Runnable task) {
+        String name = service.getName();
+        Long mem = service.getConfig().memLimit;
+        long duration = Long.parseLong(history.getProperty(name, Long.toString(Long.MAX_VALUE)));
+        Task t = new Task(name, duration, mem == null ? 0 : mem, task);
+        synchronized (this) {
+            if (cancelled) {
+                t.future.completeExceptionally(new CancellationException("Start of the service '" + name + "' cancelled"));
+                return t.future;
+            }
+            queue.add(t);
+        }
+        dispatch();
+        return t.future;
+    }
+
+    /**
+     * Starts the dispatch of the queued tasks.
+     */
+    public void start() {
+        synchronized (this) {
+            started = true;
+        }
+        dispatch();
+    }
+
+    /**
+     * Cancel the queued tasks and interrupt the running tasks.
+     */
+    public void cancel() {
+        List<Task> tasks;
+        synchronized (this) {
+            cancelled = true;
+            tasks = new ArrayList<>(queue);
+            queue.clear();
+            runningTasks.forEach(t -> {
+                if (t.thread != null) {
+                    t.thread.interrupt();
+                }
+            });
+        }
+        tasks.forEach(t -> t.future.completeExceptionally(new CancellationException("Start of the service '" + t.name + "' cancelled")));
+    }
+
+    /**
+     * Waits until all running tasks are finished.
+     *
+     * @param timeout the maximum wait time.
+     * @return {@code true} if all running tasks are finished.
+     */
+    public synchronized boolean awaitRunning(Duration timeout) {
+        long end = System.nanoTime() + timeout.toNanos();
+        try {
+            while (running > 0) {
+                long ms = (end - System.nanoTime()) / 1_000_000;
+                if (ms <= 0) {
+                    return false;
+                }
+                wait(ms);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Stores the start durations of the services for the next run.
+     */
+    public void store() {
+        if (durations.isEmpty()) {
+            return;
+        }
+        synchronized (StartScheduler.class) {
+            Properties tmp = loadHistory(timesFile);
+            durations.forEach((k, v) -> tmp.setProperty(k, v.toString()));
+            try {
+                Path parent = timesFile.toAbsolutePath().getParent();
+                if (parent != null) {
+                    Files.createDirectories(parent);
+                }
+                try (OutputStream out = Files.newOutputStream(timesFile)) {
+                    tmp.store(out, "tkit-quarkus-test docker start times (ms)");
+                }
+            } catch (IOException ex) {
+                log.warn("Failed to write the start times {}", timesFile, ex);
+            }
+        }
+    }
+
+    private void dispatch() {
+        List<Task> tasks = new ArrayList<>();
+        synchronized (this) {
+            if (!started) {
+                return;
+            }
+            while (!queue.isEmpty() && running < concurrency) {
+                Task t = queue.peek();
+                if (running > 0 && runningMemory + t.memory > memory) {
+                    break;
+                }
+                queue.poll();
+                runningTasks.add(t);
+                running++;
+                runningMemory += t.memory;
+                tasks.add(t);
+            }
+        }
+        tasks.forEach(this::run);
+    }
+
+    private void run(Task t) {
+        CompletableFuture.runAsync(() -> {
+            synchronized (this) {
+                if (cancelled) {
+                    throw new CancellationException("Start of the service '" + t.name + "' cancelled");
+                }
+                t.thread = Thread.currentThread();
+            }
+            try {
+                long begin = System.nanoTime();
+                t.task.run();
+                durations.put(t.name, (System.nanoTime() - begin) / 1_000_000);
+            } finally {
+                synchronized (this) {
+                    t.thread = null;
+                }
+                // clear the interrupt flag of the cancelled task, the thread is reused by the executor
+                Thread.interrupted();
+            }
+        }, executor).whenComplete((r, e) -> {
+            synchronized (this) {
+                runningTasks.remove(t);
+                running--;
+                runningMemory -= t.memory;
+                notifyAll();
+            }
+            if (e != null) {
+                t.future.completeExceptionally(e);
+            } else {
+                t.future.complete(null);
+            }
+            dispatch();
+        });
+    }
+
+    private static Properties loadHistory(Path file) {
+        Properties result = new Properties();
+        if (Files.exists(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                result.load(in);
+            } catch (IOException ex) {
+                log.warn("Failed to read the start times {}", file, ex);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The queued start task.
+     */
+    private static class Task {
+
+        private final String name;
+
+        private final long duration;
+
+        private final long memory;
+
+        private final Runnable task;
+
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private Thread thread;
+
+        Task(String name, long duration, long memory, Runnable task) {
+            this.name = name;
+            this.duration = duration;
+            this.memory = memory;
+            this.task = task;
+        }
+    }
+}
@@ -27,10 +27,13 @@ import org.slf4j.LoggerFactory;
 import java.io.Closeable;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.platform.commons.util.AnnotationUtils.findAnnotation;
+import static org.tkit.quarkus.test.docker.DockerTestEnvironment.SYS_PROP_SERVICES;
 import static org.tkit.quarkus.test.docker.DockerTestEnvironment.SYS_PROP_TEST_INTEGRATION;
 
 public class StartTestcontainersCondition implements ExecutionCondition {
@@ -48,18 +51,33 @@ public class StartTestcontainersCondition implements ExecutionCondition {
             ExtensionContext root = context.getRoot();
             ExtensionContext.Store store = root.getStore(ExtensionContext.Namespace.GLOBAL);
             NativeTestExtension.ExtensionState state = store.get(NativeTestExtension.ExtensionState.class.getName(), NativeTestExtension.ExtensionState.class);
+            Optional<QuarkusTestcontainers> anno = findAnnotation(element, QuarkusTestcontainers.class);
             if (state == null) {
                 log.info("Tkit Testcontainers for @NativeImageTest starting ...");
 
-                Optional<QuarkusTestcontainers> anno = findAnnotation(element, QuarkusTestcontainers.class);
+                // the services of this test class only
+                String services = System.getProperty(SYS_PROP_SERVICES);
                 if (anno.isPresent()) {
                     QuarkusTestcontainers qtc = anno.get();
                     log.info("Tkit Testcontainers integration test: {}", qtc.integrationTest());
                     System.setProperty(SYS_PROP_TEST_INTEGRATION, "" + qtc.integrationTest());
+                    if (qtc.services().length > 0) {
+                        log.info("Tkit Testcontainers services: {}", Arrays.toString(qtc.services()));
+                        System.setProperty(SYS_PROP_SERVICES, String.join(",", qtc.services()));
+                    }
                 }
 
                 TestResourceManager testResourceManager = new TestResourceManager(context.getRequiredTestClass());
-                Map<String, String> systemProps = testResourceManager.start();
+                Map<String, String> systemProps;
+                try {
+                    systemProps = testResourceManager.start();
+                } finally {
+                    if (services == null) {
+                        System.clearProperty(SYS_PROP_SERVICES);
+                    } else {
+                        System.setProperty(SYS_PROP_SERVICES, services);
+                    }
+                }
 
                 state = createState(testResourceManager, systemProps);
                 store.put(NativeTestExtension.ExtensionState.class.getName(), state);
@@ -68,11 +86,26 @@ public class StartTestcontainersCondition implements ExecutionCondition {
                     systemProps.forEach(System::setProperty);
                 }
                 log.info("Tkit Testcontainers for @NativeImageTest started! System properties: {}", systemProps);
+            } else if (anno.isPresent() && anno.get().services().length > 0) {
+                startServices(List.of(anno.get().services()));
             }
         }
         return ENABLED;
     }
 
+    /**
+     * Starts the missing services of the test class in the running docker test environments.
+     *
+     * @param services the services of the test class.
+     */
+    private static void startServices(List<String> services) {
+        for (DockerTestEnvironment environment : ServiceLifecycle.getEnvironments()) {
+            log.info("Tkit Testcontainers start the services {}", services);
+            environment.start(services);
+            environment.getProperties().forEach(System::setProperty);
+        }
+    }
+
     public static NativeTestExtension.ExtensionState createState(TestResourceManager testResourceManager, Map<String, String> systemProps) {
         try {
             Closeable closable = () -> {
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2020 tkit.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tkit.quarkus.test.docker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * The startup timing report of the docker test environment.
+ * <p>
+ * All times are {@link System#nanoTime()} based and relative to the creation of the report.
+ * The report is written as JSON to {@code target/tkit-docker-startup.json} and as a summary table
+ * to the standard output at the end of the start of the environment.
+ */
+public class StartupReport {
+
+    /**
+     * Enable the startup report. Default: {@code true}.
+     */
+    public static final String SYS_PROP_REPORT = "test.docker.report";
+
+    /**
+     * The image pull phase.
+     */
+    public static final String PULL = "pull";
+
+    /**
+     * The image build phase.
+     */
+    public static final String BUILD = "build";
+
+    /**
+     * The resolution of the environment variables.
+     */
+    public static final String ENV = "env";
+
+    /**
+     * The creation of the container.
+     */
+    public static final String CREATE = "create";
+
+    /**
+     * The copy of the volumes and the start of the container.
+     */
+    public static final String START = "start";
+
+    /**
+     * The wait strategy of the container.
+     */
+    public static final String WAIT = "wait";
+
+    /**
+     * The resolution of the test properties.
+     */
+    public static final String PROPERTIES = "properties";
+
+    private static final List<String> PHASES = List.of(PULL, BUILD, ENV, CREATE, START, WAIT, PROPERTIES);
+
+    private static final Logger log = LoggerFactory.getLogger(StartupReport.class);
+
+    private static final Path REPORT_FILE = Paths.get("target", "tkit-docker-startup.json");
+
+    private final long origin = System.nanoTime();
+
+    private final Instant created = Instant.now();
+
+    private final Map<String, ServiceTimings> services = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the timings of the service.
+     *
+     * @param name the service name.
+     * @return the service timings.
+     */
+    public ServiceTimings service(String name) {
+        return services.computeIfAbsent(name, n -> new ServiceTimings());
+    }
+
+    /**
+     * Writes the JSON report and prints the summary table.
+     *
+     * @param graph the dependency graph of the services.
+     */
+    public void write(ServiceDependencyGraph graph) {
+        if (!Boolean.parseBoolean(System.getProperty(SYS_PROP_REPORT, "true"))) {
+            return;
+        }
+        List<String> criticalPath = getCriticalPath(graph);
+        System.out.println(createSummary(criticalPath));
+        try {
+            Files.createDirectories(REPORT_FILE.getParent());
+            Files.write(REPORT_FILE, createJson(graph, criticalPath).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            log.warn("Failed to write the startup report {}", REPORT_FILE, ex);
+        }
+    }
+
+    /**
+     * Gets the critical path of the start. The path ends with the last started service and contains
+     * the dependency which was started last for each service.
+     *
+     * @param graph the dependency graph of the services.
+     * @return the list of the service names.
+     */
+    public List<String> getCriticalPath(ServiceDependencyGraph graph) {
+        LinkedList<String> result = new LinkedList<>();
+        String current = last(services.keySet());
+        while (current != null) {
+            result.addFirst(current);
+            current = last(graph.getDependencies(current));
+        }
+        return result;
+    }
+
+    private String last(Collection<String> names) {
+        return names.stream()
+                .filter(n -> services.containsKey(n) && services.get(n).isRecorded())
+                .max(Comparator.comparingLong(n -> services.get(n).getEnd()))
+                .orElse(null);
+    }
+
+    String createSummary(List<String> criticalPath) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("------------------------------\nStartup report (ms)\n");
+        sb.append(String.format("%-30s", "service"));
+        PHASES.forEach(p -> sb.append(String.format("%12s", p)));
+        sb.append(String.format("%12s%12s%n", "begin", "end"));
+        recorded().forEach((name, t) -> {
+            sb.append(String.format("%-30s", name));
+            PHASES.forEach(p -> {
+                long[] phase = t.getPhase(p);
+                sb.append(String.format("%12s", phase == null ? "-" : Long.toString(millis(phase[1] - phase[0]))));
+            });
+            sb.append(String.format("%12d%12d%n", millis(t.getBegin() - origin), millis(t.getEnd() - origin)));
+        });
+        long total = getTotal();
+        sb.append("total: ").append(millis(total)).append("\n");
+        sb.append("critical path: ").append(criticalPath.stream()
+                .map(n -> n + " (" + millis(services.get(n).getEnd() - origin) + ")")
+                .collect(Collectors.joining(" -> ")));
+        sb.append("\n------------------------------");
+        return sb.toString();
+    }
+
+    String createJson(ServiceDependencyGraph graph, List<String> criticalPath) {
+        long total = getTotal();
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n");
+        sb.append("  \"created\": ").append(quote(created.toString())).append(",\n");
+        sb.append("  \"totalMillis\": ").append(millis(total)).append(",\n");
+        sb.append("  \"criticalPath\": [").append(criticalPath.stream().map(StartupReport::quote).collect(Collectors.joining(", "))).append("],\n");
+        sb.append("  \"services\": [");
+        String services = recorded().entrySet().stream().map(e -> {
+            ServiceTimings t = e.getValue();
+            StringBuilder s = new StringBuilder();
+            s.append("\n    {\n");
+            s.append("      \"name\": ").append(quote(e.getKey())).append(",\n");
+            s.append("      \"dependencies\": [").append(graph.getDependencies(e.getKey()).stream().map(StartupReport::quote).collect(Collectors.joining(", "))).append("],\n");
+            s.append("      \"beginMillis\": ").append(millis(t.getBegin() - origin)).append(",\n");
+            s.append("      \"endMillis\": ").append(millis(t.getEnd() - origin)).append(",\n");
+            s.append("      \"phases\": {");
+            s.append(PHASES.stream().filter(p -> t.getPhase(p) != null).map(p -> {
+                long[] phase = t.getPhase(p);
+                return "\n        " + quote(p) + ": { \"beginMillis\": " + millis(phase[0] - origin)
+                        + ", \"durationMillis\": " + millis(phase[1] - phase[0]) + " }";
+            }).collect(Collectors.joining(",")));
+            s.append("\n      }\n    }");
+            return s.toString();
+        }).collect(Collectors.joining(","));
+        sb.append(services).append("\n  ]\n}\n");
+        return sb.toString();
+    }
+
+    private Map<String, ServiceTimings> recorded() {
+        Map<String, ServiceTimings> result = new TreeMap<>();
+        services.forEach((name, t) -> {
+            if (t.isRecorded()) {
+                result.put(name, t);
+            }
+        });
+        return result;
+    }
+
+    private long getTotal() {
+        return recorded().values().stream().mapToLong(t -> t.getEnd() - origin).max().orElse(0);
+    }
+
+    private static long millis(long nanos) {
+        return nanos / 1_000_000;
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    /**
+     * The phase timings of the service.
+     */
+    public static class ServiceTimings {
+
+        private final Map<String, long[]> phases = new ConcurrentHashMap<>();
+
+        /**
+         * Records the phase. The {@link System#nanoTime()} could be negative, the not recorded time
+         * is {@link Long#MIN_VALUE}.
+         *
+         * @param phase the phase name.
+         * @param begin the begin {@link System#nanoTime()} or {@link Long#MIN_VALUE}.
+         * @param end   the end {@link System#nanoTime()} or {@link Long#MIN_VALUE}.
+         */
+        public void record(String phase, long begin, long end) {
+            if (begin != Long.MIN_VALUE && end != Long.MIN_VALUE && end - begin >= 0) {
+                phases.put(phase, new long[]{begin, end});
+            }
+        }
+
+        /**
+         * Records the phase from the begin time until now.
+         *
+         * @param phase the phase name.
+         * @param begin the begin {@link System#nanoTime()}.
+         */
+        public void record(String phase, long begin) {
+            record(phase, begin, System.nanoTime());
+        }
+
+        public long[] getPhase(String phase) {
+            return phases.get(phase);
+        }
+
+        /**
+         * Gets the begin of the first phase.
+         *
+         * @return the begin {@link System#nanoTime()} or {@link Long#MIN_VALUE} if no phase is recorded.
+         */
+        public long getBegin() {
+            return phases.values().stream().mapToLong(p -> p[0]).min().orElse(Long.MIN_VALUE);
+        }
+
+        /**
+         * Gets the end of the last phase.
+         *
+         * @return the end {@link System#nanoTime()} or {@link Long#MIN_VALUE} if no phase is recorded.
+         */
+        public long getEnd() {
+            return phases.values().stream().mapToLong(p -> p[1]).max().orElse(Long.MIN_VALUE);
+        }
+
+        boolean isRecorded() {
+            return !phases.isEmpty();
+        }
+    }
+}
@@ -1,12 +1,21 @@
 package org.tkit.quarkus.test.docker;
 
 import com.github.dockerjava.api.command.InspectContainerResponse;
+import org.testcontainers.DockerClientFactory;
 import org.testcontainers.containers.FixedHostPortGenericContainer;
 
 public class TestGenericContainer extends FixedHostPortGenericContainer<TestGenericContainer> {
 
     private StartingListener starting;
 
+    private InspectContainerResponse attached;
+
+    private long createdTime = Long.MIN_VALUE;
+
+    private long startingTime = Long.MIN_VALUE;
+
+    private long startedTime = Long.MIN_VALUE;
+
     public TestGenericContainer(final String dockerImageName) {
         super(dockerImageName);
     }
@@ -15,7 +24,89 @@ public class TestGenericContainer extends FixedHostPortGenericContainer<TestGene
         this.starting = starting;
     }
 
+    /**
+     * Attach this container to the existing running docker container.
+     * The attached container is not started and not stopped by this instance.
+     *
+     * @param containerId the docker container ID.
+     */
+    public void attach(String containerId) {
+        attached = DockerClientFactory.instance().client().inspectContainerCmd(containerId).exec();
+    }
+
+    public boolean isAttached() {
+        return attached != null;
+    }
+
+    @Override
+    public String getContainerId() {
+        if (attached != null) {
+            return attached.getId();
+        }
+        return super.getContainerId();
+    }
+
+    @Override
+    public InspectContainerResponse getContainerInfo() {
+        if (attached != null) {
+            return attached;
+        }
+        return super.getContainerInfo();
+    }
+
+    @Override
+    public void start() {
+        if (attached == null) {
+            super.start();
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (attached == null) {
+            super.stop();
+        }
+    }
+
+    /**
+     * Gets the {@link System#nanoTime()} when the container was created.
+     *
+     * @return the nano time or {@link Long#MIN_VALUE} if the container was not created.
+     */
+    public long getCreatedTime() {
+        return createdTime;
+    }
+
+    /**
+     * Gets the {@link System#nanoTime()} when the container was started and the wait strategy begins.
+     *
+     * @return the nano time or {@link Long#MIN_VALUE} if the container was not started.
+     */
+    public long getStartingTime() {
+        return startingTime;
+    }
+
+    /**
+     * Gets the {@link System#nanoTime()} when the wait strategy of the container was finished.
+     *
+     * @return the nano time or {@link Long#MIN_VALUE} if the container was not started.
+     */
+    public long getStartedTime() {
+        return startedTime;
+    }
+
+    @Override
+    protected void containerIsCreated(String containerId) {
+        createdTime = System.nanoTime();
+    }
+
+    @Override
+    protected void containerIsStarted(InspectContainerResponse containerInfo) {
+        startedTime = System.nanoTime();
+    }
+
     protected void containerIsStarting(InspectContainerResponse containerInfo) {
+        startingTime = System.nanoTime();
         if (starting != null) {
             starting.containerIsStarting(containerInfo);
         }
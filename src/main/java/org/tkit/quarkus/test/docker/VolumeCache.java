@@ -0,0 +1,200 @@
+/*
+ * Copyright 2020 tkit.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tkit.quarkus.test.docker;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.exception.NotFoundException;
+import com.github.dockerjava.api.model.Bind;
+import com.github.dockerjava.api.model.HostConfig;
+import com.github.dockerjava.api.model.Volume;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.DockerClientFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The content-addressed cache of the volume directories.
+ * <p>
+ * The named docker volume {@code tkit-cache-<hash>} is created and populated once from the host directory
+ * and attached read-only to the containers by reference. The hash is created from the content of the directory,
+ * a changed directory creates a new volume. The cache volumes are not removed by the tests, use
+ * {@code docker volume prune --filter label=org.tkit.quarkus.test.cache} to clean up the cache.
+ * <p>
+ * The test JVMs of the host create the volume under the lock file {@code tkit-cache-<hash>.lock} in the temporary
+ * directory. The completely populated volume contains the marker file {@code .tkit-cache-complete}, the volume
+ * without the marker, for example of an interrupted test run, is removed and populated again.
+ */
+public class VolumeCache {
+
+    /**
+     * The label of the cache volumes.
+     */
+    public static final String LABEL_CACHE = "org.tkit.quarkus.test.cache";
+
+    private static final Logger log = LoggerFactory.getLogger(VolumeCache.class);
+
+    private static final Map<String, Object> LOCKS = new ConcurrentHashMap<>();
+
+    private static final String MARKER = ".tkit-cache-complete";
+
+    private VolumeCache() {
+    }
+
+    /**
+     * Gets or creates the cache volume of the directory.
+     *
+     * @param service the service name.
+     * @param image   the docker image used to populate the volume.
+     * @param source  the host directory.
+     * @return the name of the docker volume.
+     */
+    public static String getOrCreate(String service, String image, Path source) {
+        String name = volumeName(source);
+        synchronized (LOCKS.computeIfAbsent(name, k -> new Object())) {
+            return withFileLock(name, () -> {
+                DockerClient client = DockerClientFactory.instance().client();
+                if (exists(client, name)) {
+                    if (isComplete(client, name, image)) {
+                        System.out.printf("[tkit-quarkus-test] Service: '%s' use the cache volume %s of %s%n", service, name, source);
+                        return name;
+                    }
+                    log.warn("The cache volume {} is not completely populated, create the volume again", name);
+                    removeVolume(client, name);
+                }
+                long start = System.nanoTime();
+                Map<String, String> labels = new HashMap<>();
+                labels.put(LABEL_CACHE, "true");
+                labels.put(LABEL_CACHE + ".source", source.toString());
+                client.createVolumeCmd().withName(name).withLabels(labels).exec();
+                try {
+                    populate(client, name, image, source);
+                } catch (RuntimeException ex) {
+                    removeVolume(client, name);
+                    throw new IllegalStateException("Error populate the cache volume " + name + " of the service " + service, ex);
+                }
+                System.out.printf("[tkit-quarkus-test] Service: '%s' created the cache volume %s of %s in %d ms%n",
+                        service, name, source, (System.nanoTime() - start) / 1_000_000);
+                return name;
+            });
+        }
+    }
+
+    /**
+     * Gets the name of the cache volume of the directory content.
+     *
+     * @param source the host directory.
+     * @return the name of the docker volume.
+     */
+    static String volumeName(Path source) {
+        String hash = ContentHash.create().addPath("volume", source).toHex();
+        return "tkit-cache-" + hash.substring(0, 16);
+    }
+
+    private static void populate(DockerClient client, String name, String image, Path source) {
+        withHelper(client, name, image, id -> {
+            client.copyArchiveToContainerCmd(id)
+                    .withHostResource(source.toString())
+                    .withDirChildrenOnly(true)
+                    .withRemotePath("/cache")
+                    .exec();
+            // the marker is copied as the last file of the populated volume
+            try {
+                Path dir = Files.createTempDirectory("tkit-cache");
+                Path marker = Files.createFile(dir.resolve(MARKER));
+                try {
+                    client.copyArchiveToContainerCmd(id)
+                            .withHostResource(marker.toString())
+                            .withRemotePath("/cache")
+                            .exec();
+                } finally {
+                    Files.deleteIfExists(marker);
+                    Files.deleteIfExists(dir);
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Error create the marker of the cache volume " + name, ex);
+            }
+            return null;
+        });
+    }
+
+    private static boolean isComplete(DockerClient client, String name, String image) {
+        return withHelper(client, name, image, id -> {
+            try (InputStream in = client.copyArchiveFromContainerCmd(id, "/cache/" + MARKER).exec()) {
+                return true;
+            } catch (NotFoundException ex) {
+                return false;
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Error read the marker of the cache volume " + name, ex);
+            }
+        });
+    }
+
+    private static <T> T withHelper(DockerClient client, String name, String image, Function<String, T> action) {
+        // the helper container is never started, the archives are copied from and into the mounted volume
+        String id = client.createContainerCmd(image)
+                .withCmd("true")
+                .withHostConfig(new HostConfig().withBinds(new Bind(name, new Volume("/cache"))))
+                .exec()
+                .getId();
+        try {
+            return action.apply(id);
+        } finally {
+            client.removeContainerCmd(id).withForce(true).exec();
+        }
+    }
+
+    private static <T> T withFileLock(String name, Supplier<T> action) {
+        Path lockFile = Paths.get(System.getProperty("java.io.tmpdir"), name + ".lock");
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = channel.lock()) {
+            return action.get();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Error lock the cache volume " + name + " with " + lockFile, ex);
+        }
+    }
+
+    private static boolean exists(DockerClient client, String name) {
+        try {
+            client.inspectVolumeCmd(name).exec();
+            return true;
+        } catch (NotFoundException ex) {
+            return false;
+        }
+    }
+
+    private static void removeVolume(DockerClient client, String name) {
+        try {
+            client.removeVolumeCmd(name).exec();
+        } catch (Exception ex) {
+            log.warn("Failed to remove the cache volume {}", name, ex);
+        }
+    }
+}
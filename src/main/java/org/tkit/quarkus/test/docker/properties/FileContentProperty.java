@@ -0,0 +1,57 @@
+/*
+ * Copyright 2020 tkit.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tkit.quarkus.test.docker.properties;
+
+import org.tkit.quarkus.test.docker.DockerTestEnvironment;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * The content of the file {@code $${file:<path>}}, the path is relative to the working directory.
+ * <p>
+ * The trailing line breaks are removed. The value of the not existing file is {@code null}.
+ */
+public class FileContentProperty extends TestProperty {
+
+    String path;
+
+    @Override
+    public String getValue(DockerTestEnvironment environment) {
+        Path file = Paths.get(path);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            return Files.readString(file, StandardCharsets.UTF_8).replaceAll("[\\r\\n]+$", "");
+        } catch (IOException ex) {
+            throw new IllegalStateException("Error read the file " + file + " of the test property " + name, ex);
+        }
+    }
+
+    public static FileContentProperty createTestProperty(String name, String[] data) {
+        FileContentProperty r = new FileContentProperty();
+        r.name = name;
+        // the path could contain the separator, for example C:/data
+        r.path = String.join(":", Arrays.copyOfRange(data, 1, data.length));
+        return r;
+    }
+}
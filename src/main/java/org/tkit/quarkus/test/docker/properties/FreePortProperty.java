@@ -0,0 +1,64 @@
+/*
+ * Copyright 2020 tkit.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tkit.quarkus.test.docker.properties;
+
+import org.tkit.quarkus.test.docker.DockerTestEnvironment;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The free host port {@code $${free-port}} or {@code $${free-port:<name>}}.
+ * <p>
+ * The port is leased once per docker test environment, all references with the same name have the same port.
+ * The reference without the name has its own port, the name is created from the scope of the test property
+ * by the {@link TestPropertyLoader}, so the same configuration parsed again leases the same port.
+ */
+public class FreePortProperty extends TestProperty {
+
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    String key;
+
+    boolean anonymous;
+
+    @Override
+    public String getValue(DockerTestEnvironment environment) {
+        if (environment != null) {
+            return getValue(PropertyResolution.of(environment));
+        }
+        // the resolver without the environment is owned by this call, release the leased port
+        PropertyResolution resolution = PropertyResolution.of(null);
+        try {
+            return getValue(resolution);
+        } finally {
+            resolution.getResolver().close();
+        }
+    }
+
+    @Override
+    public String getValue(PropertyResolution resolution) {
+        return "" + resolution.getResolver().getFreePort(key);
+    }
+
+    public static FreePortProperty createTestProperty(String name, String[] data) {
+        FreePortProperty r = new FreePortProperty();
+        r.name = name;
+        r.anonymous = data.length < 2;
+        r.key = r.anonymous ? "free-port-" + COUNTER.incrementAndGet() : data[1];
+        return r;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2020 tkit.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tkit.quarkus.test.docker.properties;
+
+import org.tkit.quarkus.test.docker.DockerTestEnvironment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The single resolution of the list of the test properties.
+ * <p>
+ * The property {@code $${prop:key}} which references another property of the list is resolved first,
+ * every property is resolved once. The cycle of the references fails with the reference path.
+ */
+public class PropertyResolution {
+
+    private final PropertyResolver resolver;
+
+    private final Map<String, TestProperty> properties = new LinkedHashMap<>();
+
+    private final Map<String, String> values = new LinkedHashMap<>();
+
+    private final List<String> path = new ArrayList<>();
+
+    PropertyResolution(PropertyResolver resolver, List<TestProperty> properties) {
+        this.resolver = resolver;
+        properties.forEach(p -> this.properties.put(p.name, p));
+    }
+
+    /**
+     * Creates the resolution without the properties of the environment.
+     *
+     * @param environment the docker test environment.
+     * @return the property resolution.
+     */
+    public static PropertyResolution of(DockerTestEnvironment environment) {
+        PropertyResolver resolver = environment != null ? environment.getPropertyResolver() : new PropertyResolver(null);
+        return new PropertyResolution(resolver, Collections.emptyList());
+    }
+
+    public DockerTestEnvironment getEnvironment() {
+        return resolver.getEnvironment();
+    }
+
+    public PropertyResolver getResolver() {
+        return resolver;
+    }
+
+    /**
+     * Gets the value of the property of the resolution, the test property of the environment or the system property.
+     *
+     * @param key          the property key.
+     * @param defaultValue the default value.
+     * @return the property value.
+     */
+    public String getProperty(String key, String defaultValue) {
+        if (properties.containsKey(key)) {
+            return resolve(key);
+        }
+        DockerTestEnvironment environment = getEnvironment();
+        if (environment != null) {
+            return environment.getProperty(key, defaultValue);
+        }
+        return System.getProperty(key, defaultValue);
+    }
+
+    Map<String, String> resolveAll() {
+        properties.keySet().forEach(this::resolve);
+        return values;
+    }
+
+    private String resolve(String name) {
+        if (values.containsKey(name)) {
+            return values.get(name);
+        }
+        if (path.contains(name)) {
+            List<String> cycle = new ArrayList<>(path.subList(path.indexOf(name), path.size()));
+            cycle.add(name);
+            throw new IllegalStateException("Cyclic reference between the test properties: " + String.join(" -> ", cycle));
+        }
+        path.add(name);
+        String value;
+        try {
+            value = properties.get(name).getValue(this);
+        } catch (IllegalStateException ex) {
+            if (path.size() > 1) {
+                throw ex;
+            }
+            throw new IllegalStateException("Error resolve the test property '" + name + "': " + ex.getMessage(), ex);
+        } finally {
+            path.remove(path.size() - 1);
+        }
+        values.put(name, value);
+        return value;
+    }
+}
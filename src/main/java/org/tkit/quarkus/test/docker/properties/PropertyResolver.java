@@ -0,0 +1,168 @@
+/*
+ * Copyright 2020 tkit.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tkit.quarkus.test.docker.properties;
+
+import org.tkit.quarkus.test.docker.DockerComposeService;
+import org.tkit.quarkus.test.docker.DockerTestEnvironment;
+import org.tkit.quarkus.test.docker.PortLease;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The property resolver of the docker test environment.
+ * <p>
+ * The host and the mapped ports of the services are memoized per container, the restarted service with the new
+ * container is looked up again. The free ports are leased once per environment. The resolution of the list of the properties is done by the {@link PropertyResolution}.
+ */
+public class PropertyResolver {
+
+    private final DockerTestEnvironment environment;
+
+    private final Map<String, Lookup> lookups = new ConcurrentHashMap<>();
+
+    private final Map<String, PortLease> freePorts = new ConcurrentHashMap<>();
+
+    public PropertyResolver(DockerTestEnvironment environment) {
+        this.environment = environment;
+    }
+
+    public DockerTestEnvironment getEnvironment() {
+        return environment;
+    }
+
+    /**
+     * Resolves the properties. The references between the properties are resolved in the dependency order.
+     *
+     * @param properties the test properties.
+     * @return the map of the property name and the value.
+     * @throws IllegalStateException for the undefined service or the cycle of the property references.
+     */
+    public Map<String, String> resolve(List<TestProperty> properties) {
+        return new PropertyResolution(this, properties).resolveAll();
+    }
+
+    /**
+     * Gets the host of the service.
+     *
+     * @param service the service name.
+     * @return the host.
+     * @throws IllegalStateException if the service is not part of the test environment.
+     */
+    public String getHost(String service) {
+        DockerComposeService s = getService(service);
+        Lookup lookup = getLookup(s);
+        if (lookup == null) {
+            return s.getHost();
+        }
+        if (lookup.host == null) {
+            lookup.host = s.getHost();
+        }
+        return lookup.host;
+    }
+
+    /**
+     * Gets the mapped port of the service.
+     *
+     * @param service the service name.
+     * @param port    the container port.
+     * @return the mapped port.
+     * @throws IllegalStateException if the service is not part of the test environment.
+     */
+    public Integer getPort(String service, int port) {
+        DockerComposeService s = getService(service);
+        Lookup lookup = getLookup(s);
+        if (lookup == null) {
+            return s.getPort(port);
+        }
+        return lookup.ports.computeIfAbsent(port, s::getPort);
+    }
+
+    /**
+     * Gets the IP address of the service container in the network of the test environment.
+     *
+     * @param service the service name.
+     * @return the IP address.
+     * @throws IllegalStateException if the service is not part of the test environment.
+     */
+    public String getIpAddress(String service) {
+        DockerComposeService s = getService(service);
+        Lookup lookup = getLookup(s);
+        if (lookup == null) {
+            return s.getIpAddress(environment.getNetwork());
+        }
+        if (lookup.ip == null) {
+            lookup.ip = s.getIpAddress(environment.getNetwork());
+        }
+        return lookup.ip;
+    }
+
+    /**
+     * Gets the free host port of the name. The port is leased by the first call and released by the {@link #close()}.
+     *
+     * @param name the name of the free port.
+     * @return the free host port.
+     * @throws IllegalStateException if no port of the lease range is free.
+     */
+    public int getFreePort(String name) {
+        return freePorts.computeIfAbsent(name, PortLease::acquire).getPort();
+    }
+
+    /**
+     * Releases the leased free ports.
+     */
+    public void close() {
+        freePorts.values().forEach(PortLease::close);
+        freePorts.clear();
+    }
+
+    private DockerComposeService getService(String name) {
+        DockerComposeService result = environment == null ? null : environment.getService(name);
+        if (result == null) {
+            throw new IllegalStateException("Service '" + name + "' is not part of the test environment");
+        }
+        return result;
+    }
+
+    private Lookup getLookup(DockerComposeService service) {
+        String id = service.getContainer() != null ? service.getContainer().getContainerId() : null;
+        if (id == null) {
+            // not started container is not cached
+            return null;
+        }
+        return lookups.compute(service.getName(), (k, v) -> v != null && id.equals(v.containerId) ? v : new Lookup(id));
+    }
+
+    /**
+     * The memoized host and ports of the container.
+     */
+    private static class Lookup {
+
+        private final String containerId;
+
+        private volatile String host;
+
+        private volatile String ip;
+
+        private final Map<Integer, Integer> ports = new ConcurrentHashMap<>();
+
+        Lookup(String containerId) {
+            this.containerId = containerId;
+        }
+    }
+}
@@ -0,0 +1,392 @@
+/*
+ * Copyright 2020 tkit.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tkit.quarkus.test.docker.properties;
+
+import org.tkit.quarkus.test.docker.DockerTestEnvironment;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The precompiled template of the test property value.
+ * <p>
+ * The value is parsed once into the literal and reference segments. The reference {@code $${type:arg:arg}}
+ * is resolved by the {@link TestProperty} of the type. The reference {@code $${type:arg|default}} renders the
+ * default template if the reference value is {@code null}. The references could be nested in the arguments and in the
+ * default value, for example {@code $${prop:db.url|jdbc:postgresql://$${host:db}:$${port:db:5432}/db}}.
+ * The escaped <code>\$${</code> is rendered as the literal <code>$${</code>. All other characters, the single quotes
+ * and braces included, are rendered without any change.
+ */
+public final class PropertyTemplate {
+
+    static final String REF_START = "$${";
+
+    static final String ESCAPED_REF_START = "\\$${";
+
+    private final Segment[] segments;
+
+    private final int literalLength;
+
+    private PropertyTemplate(Segment[] segments, int literalLength) {
+        this.segments = segments;
+        this.literalLength = literalLength;
+    }
+
+    /**
+     * Compiles the value to the template.
+     *
+     * @param value the property value.
+     * @return the template.
+     * @throws IllegalArgumentException if the reference is not closed.
+     */
+    public static PropertyTemplate compile(String value) {
+        List<Segment> segments = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int length = 0;
+        int i = 0;
+        int n = value.length();
+        while (i < n) {
+            if (value.startsWith(ESCAPED_REF_START, i)) {
+                literal.append(REF_START);
+                i += ESCAPED_REF_START.length();
+            } else if (value.startsWith(REF_START, i)) {
+                int end = findEnd(value, i + REF_START.length());
+                if (end < 0) {
+                    throw new IllegalArgumentException("Missing '}' of the reference at the index " + i + " of the value: " + value);
+                }
+                if (literal.length() > 0) {
+                    segments.add(new Literal(literal.toString()));
+                    length += literal.length();
+                    literal.setLength(0);
+                }
+                segments.add(createReference(value.substring(i + REF_START.length(), end)));
+                i = end + 1;
+            } else {
+                literal.append(value.charAt(i));
+                i++;
+            }
+        }
+        if (literal.length() > 0) {
+            segments.add(new Literal(literal.toString()));
+            length += literal.length();
+        }
+        return new PropertyTemplate(segments.toArray(new Segment[0]), length);
+    }
+
+    /**
+     * Creates the template of the {@link MessageFormat} pattern with the arguments <code>{0}</code> to
+     * <code>{n}</code> of the test properties. The pattern keeps the quoting rules of the {@link MessageFormat}.
+     *
+     * @param pattern    the message format pattern.
+     * @param properties the test properties of the arguments.
+     * @return the template.
+     */
+    static PropertyTemplate ofMessageFormat(String pattern, List<TestProperty> properties) {
+        return new PropertyTemplate(new Segment[]{new MessageFormatReference(new MessageFormat(pattern), properties)}, pattern.length());
+    }
+
+    /**
+     * Returns {@code true} if the template has no references.
+     *
+     * @return {@code true} for the constant template.
+     */
+    public boolean isConstant() {
+        for (Segment s : segments) {
+            if (!(s instanceof Literal)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Renders the template.
+     *
+     * @param environment the docker test environment.
+     * @return the rendered value.
+     */
+    public String render(DockerTestEnvironment environment) {
+        if (environment != null) {
+            return render(PropertyResolution.of(environment));
+        }
+        // the resolver without the environment is owned by this rendering, release the leased free ports
+        PropertyResolution resolution = PropertyResolution.of(null);
+        try {
+            return render(resolution);
+        } finally {
+            resolution.getResolver().close();
+        }
+    }
+
+    /**
+     * Renders the template in the property resolution.
+     *
+     * @param resolution the property resolution.
+     * @return the rendered value.
+     */
+    public String render(PropertyResolution resolution) {
+        if (segments.length == 1) {
+            return segments[0].value(resolution);
+        }
+        StringBuilder sb = new StringBuilder(literalLength + 16 * segments.length);
+        for (Segment s : segments) {
+            sb.append(s.value(resolution));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Gets the names of the docker services referenced by the template.
+     *
+     * @return the set of the referenced docker service names.
+     */
+    public Set<String> getReferencedServices() {
+        Set<String> result = new HashSet<>();
+        for (Segment s : segments) {
+            result.addAll(s.getReferencedServices());
+        }
+        return result;
+    }
+
+    /**
+     * Gets the precompiled test properties of the references in the order of the template, the nested
+     * references and the default values included.
+     *
+     * @return the list of the test properties.
+     */
+    List<TestProperty> getProperties() {
+        List<TestProperty> result = new ArrayList<>();
+        for (Segment s : segments) {
+            s.collect(result);
+        }
+        return result;
+    }
+
+    private static Segment createReference(String expression) {
+        String ref = expression;
+        PropertyTemplate defaultValue = null;
+        int index = indexOfDefault(expression);
+        if (index >= 0) {
+            ref = expression.substring(0, index);
+            defaultValue = compile(expression.substring(index + 1));
+        }
+        if (ref.contains(REF_START)) {
+            return new DynamicReference(compile(ref), defaultValue);
+        }
+        return new Reference(TestPropertyLoader.createReference(ref), defaultValue);
+    }
+
+    /**
+     * Finds the closing brace of the reference, the nested references are skipped.
+     */
+    private static int findEnd(String value, int start) {
+        int depth = 1;
+        int i = start;
+        while (i < value.length()) {
+            if (value.startsWith(ESCAPED_REF_START, i)) {
+                i += ESCAPED_REF_START.length();
+                continue;
+            }
+            if (value.startsWith(REF_START, i)) {
+                depth++;
+                i += REF_START.length();
+                continue;
+            }
+            if (value.charAt(i) == '}' && --depth == 0) {
+                return i;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the default value separator outside of the nested references.
+     */
+    private static int indexOfDefault(String expression) {
+        int depth = 0;
+        int i = 0;
+        while (i < expression.length()) {
+            if (expression.startsWith(ESCAPED_REF_START, i)) {
+                i += ESCAPED_REF_START.length();
+                continue;
+            }
+            if (expression.startsWith(REF_START, i)) {
+                depth++;
+                i += REF_START.length();
+                continue;
+            }
+            char c = expression.charAt(i);
+            if (c == '}') {
+                depth--;
+            } else if (c == '|' && depth == 0) {
+                return i;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * The segment of the template.
+     */
+    interface Segment {
+
+        String value(PropertyResolution resolution);
+
+        default Set<String> getReferencedServices() {
+            return Collections.emptySet();
+        }
+
+        default void collect(List<TestProperty> result) {
+        }
+    }
+
+    /**
+     * The literal text.
+     */
+    static final class Literal implements Segment {
+
+        private final String text;
+
+        Literal(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public String value(PropertyResolution resolution) {
+            return text;
+        }
+    }
+
+    /**
+     * The reference resolved by the precompiled test property.
+     */
+    static final class Reference implements Segment {
+
+        private final TestProperty property;
+
+        private final PropertyTemplate defaultValue;
+
+        Reference(TestProperty property, PropertyTemplate defaultValue) {
+            this.property = property;
+            this.defaultValue = defaultValue;
+        }
+
+        @Override
+        public String value(PropertyResolution resolution) {
+            String result = property.getValue(resolution);
+            if (result == null && defaultValue != null) {
+                return defaultValue.render(resolution);
+            }
+            return result;
+        }
+
+        @Override
+        public Set<String> getReferencedServices() {
+            Set<String> result = new HashSet<>(property.getReferencedServices());
+            if (defaultValue != null) {
+                result.addAll(defaultValue.getReferencedServices());
+            }
+            return result;
+        }
+        @Override
+        public void collect(List<TestProperty> result) {
+            result.add(property);
+            if (defaultValue != null) {
+                result.addAll(defaultValue.getProperties());
+            }
+        }
+    }
+
+    /**
+     * The reference with the nested references, the test property is created for every rendering.
+     */
+    static final class DynamicReference implements Segment {
+
+        private final PropertyTemplate expression;
+
+        private final PropertyTemplate defaultValue;
+
+        DynamicReference(PropertyTemplate expression, PropertyTemplate defaultValue) {
+            this.expression = expression;
+            this.defaultValue = defaultValue;
+        }
+
+        @Override
+        public String value(PropertyResolution resolution) {
+            String result = TestPropertyLoader.createReference(expression.render(resolution)).getValue(resolution);
+            if (result == null && defaultValue != null) {
+                return defaultValue.render(resolution);
+            }
+            return result;
+        }
+
+        @Override
+        public Set<String> getReferencedServices() {
+            Set<String> result = new HashSet<>(expression.getReferencedServices());
+            if (defaultValue != null) {
+                result.addAll(defaultValue.getReferencedServices());
+            }
+            return result;
+        }
+        @Override
+        public void collect(List<TestProperty> result) {
+            result.addAll(expression.getProperties());
+            if (defaultValue != null) {
+                result.addAll(defaultValue.getProperties());
+            }
+        }
+    }
+
+    /**
+     * The {@link MessageFormat} pattern of the test properties of the previous group property.
+     */
+    static final class MessageFormatReference implements Segment {
+
+        private final MessageFormat message;
+
+        private final List<TestProperty> properties;
+
+        MessageFormatReference(MessageFormat message, List<TestProperty> properties) {
+            this.message = message;
+            this.properties = properties;
+        }
+
+        @Override
+        public String value(PropertyResolution resolution) {
+            Object[] parameters = properties.stream().map(p -> p.getValue(resolution)).toArray();
+            return message.format(parameters, new StringBuffer(), null).toString();
+        }
+
+        @Override
+        public Set<String> getReferencedServices() {
+            Set<String> result = new HashSet<>();
+            properties.forEach(p -> result.addAll(p.getReferencedServices()));
+            return result;
+        }
+
+        @Override
+        public void collect(List<TestProperty> result) {
+            result.addAll(properties);
+        }
+    }
+}
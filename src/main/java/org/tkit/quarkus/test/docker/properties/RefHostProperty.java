@@ -16,17 +16,28 @@
 
 package org.tkit.quarkus.test.docker.properties;
 
-import org.tkit.quarkus.test.docker.DockerComposeService;
 import org.tkit.quarkus.test.docker.DockerTestEnvironment;
 
+import java.util.Collections;
+import java.util.Set;
+
 public class RefHostProperty extends TestProperty {
 
     String service;
 
     @Override
     public String getValue(DockerTestEnvironment environment) {
-        DockerComposeService dcs = environment.getService(service);
-        return dcs.getHost();
+        return getValue(PropertyResolution.of(environment));
+    }
+
+    @Override
+    public String getValue(PropertyResolution resolution) {
+        return resolution.getResolver().getHost(service);
+    }
+
+    @Override
+    public Set<String> getReferencedServices() {
+        return Collections.singleton(service);
     }
 
     public static RefHostProperty createTestProperty(String name, String[] data) {
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2020 tkit.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tkit.quarkus.test.docker.properties;
+
+import org.tkit.quarkus.test.docker.DockerTestEnvironment;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * The IP address {@code $${ip:<service>}} of the container in the network of the docker test environment.
+ */
+public class RefIpProperty extends TestProperty {
+
+    String service;
+
+    @Override
+    public String getValue(DockerTestEnvironment environment) {
+        return getValue(PropertyResolution.of(environment));
+    }
+
+    @Override
+    public String getValue(PropertyResolution resolution) {
+        return resolution.getResolver().getIpAddress(service);
+    }
+
+    @Override
+    public Set<String> getReferencedServices() {
+        return Collections.singleton(service);
+    }
+
+    public static RefIpProperty createTestProperty(String name, String[] data) {
+        RefIpProperty r = new RefIpProperty();
+        r.name = name;
+        r.service = data[1];
+        return r;
+    }
+}
@@ -16,9 +16,11 @@
 
 package org.tkit.quarkus.test.docker.properties;
 
-import org.tkit.quarkus.test.docker.DockerComposeService;
 import org.tkit.quarkus.test.docker.DockerTestEnvironment;
 
+import java.util.Collections;
+import java.util.Set;
+
 public class RefPortProperty extends TestProperty {
 
     String service;
@@ -27,8 +29,17 @@ public class RefPortProperty extends TestProperty {
 
     @Override
     public String getValue(DockerTestEnvironment environment) {
-        DockerComposeService dcs = environment.getService(service);
-        return "" + dcs.getPort(Integer.parseInt(port));
+        return getValue(PropertyResolution.of(environment));
+    }
+
+    @Override
+    public String getValue(PropertyResolution resolution) {
+        return "" + resolution.getResolver().getPort(service, Integer.parseInt(port));
+    }
+
+    @Override
+    public Set<String> getReferencedServices() {
+        return Collections.singleton(service);
     }
 
     public static RefPortProperty createTestProperty(String name, String[] data) {
@@ -19,27 +19,48 @@ package org.tkit.quarkus.test.docker.properties;
 import org.tkit.quarkus.test.docker.DockerTestEnvironment;
 
 import java.text.MessageFormat;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 public class TestGroupProperty extends TestProperty {
 
-    MessageFormat message;
-
-    List<TestProperty> testProperties = new ArrayList<>();
+    PropertyTemplate template;
 
     @Override
     public String getValue(DockerTestEnvironment environment) {
-        List<String> parameters = testProperties.stream().map(c -> c.getValue(environment)).collect(Collectors.toList());
-        return message.format(parameters.toArray(new Object[]{}), new StringBuffer(), null).toString();
+        return template.render(environment);
     }
 
+    @Override
+    public String getValue(PropertyResolution resolution) {
+        return template.render(resolution);
+    }
+
+    @Override
+    public Set<String> getReferencedServices() {
+        return template.getReferencedServices();
+    }
+
+    /**
+     * Creates the group property of the {@link MessageFormat} pattern with the arguments <code>{0}</code> to
+     * <code>{n}</code> of the test properties.
+     *
+     * @param name           the property name.
+     * @param data           the message format pattern.
+     * @param testProperties the test properties of the arguments.
+     * @return the group property.
+     * @deprecated use the {@link #createTestProperty(String, PropertyTemplate)} or the
+     * {@link TestPropertyLoader#createTestProperty(String, String)} of the value with the references.
+     */
+    @Deprecated
     public static TestGroupProperty createTestProperty(String name, String data, List<TestProperty> testProperties) {
+        return createTestProperty(name, PropertyTemplate.ofMessageFormat(data, testProperties));
+    }
+
+    public static TestGroupProperty createTestProperty(String name, PropertyTemplate template) {
         TestGroupProperty r = new TestGroupProperty();
         r.name = name;
-        r.message = new MessageFormat(data);
-        r.testProperties = testProperties;
+        r.template = template;
         return r;
     }
 }
@@ -26,7 +26,12 @@ public class TestPropProperty extends TestProperty {
 
     @Override
     public String getValue(DockerTestEnvironment environment) {
-      return System.getProperty(key, defaultValue);
+      return getValue(PropertyResolution.of(environment));
+    }
+
+    @Override
+    public String getValue(PropertyResolution resolution) {
+        return resolution.getProperty(key, defaultValue);
     }
 
     public static TestPropProperty createTestProperty(String name, String[] data) {
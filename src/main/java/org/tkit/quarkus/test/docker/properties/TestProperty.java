@@ -18,10 +18,37 @@ package org.tkit.quarkus.test.docker.properties;
 
 import org.tkit.quarkus.test.docker.DockerTestEnvironment;
 
+import java.util.Collections;
+import java.util.Set;
+
 public abstract class TestProperty {
 
     public String name;
 
+    /**
+     * The lazy property of the label {@code test.property.lazy.<name>} is resolved on the first read.
+     */
+    public boolean lazy;
+
     public abstract String getValue(DockerTestEnvironment environment);
 
+    /**
+     * Gets the value in the property resolution with the memoized service lookups.
+     *
+     * @param resolution the property resolution.
+     * @return the property value.
+     */
+    public String getValue(PropertyResolution resolution) {
+        return getValue(resolution.getEnvironment());
+    }
+
+    /**
+     * Gets the names of the docker services referenced by this property.
+     *
+     * @return the set of referenced docker service names.
+     */
+    public Set<String> getReferencedServices() {
+        return Collections.emptySet();
+    }
+
 }
@@ -15,8 +15,24 @@
  */
 package org.tkit.quarkus.test.docker.properties;
 
+/**
+ * The creator of the test property of the reference {@code $${<type>:<arg>:<arg>}}.
+ * <p>
+ * The custom creators are loaded by the {@link java.util.ServiceLoader} from the
+ * {@code META-INF/services/org.tkit.quarkus.test.docker.properties.TestPropertyCreator} and must return the reference
+ * type by the {@link #getType()}. The creators could be also registered by the {@link TestPropertyLoader#register(String, TestPropertyCreator)}.
+ */
 @FunctionalInterface
 public interface TestPropertyCreator {
 
     TestProperty createTestProperty(String name, String[] data);
+
+    /**
+     * Gets the reference type of the creator loaded by the {@link java.util.ServiceLoader}.
+     *
+     * @return the reference type, for example {@code port}.
+     */
+    default String getType() {
+        return null;
+    }
 }
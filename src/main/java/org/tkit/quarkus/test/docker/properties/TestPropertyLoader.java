@@ -16,74 +16,100 @@
 
 package org.tkit.quarkus.test.docker.properties;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tkit.quarkus.test.docker.DockerTestEnvironment;
+
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class TestPropertyLoader {
 
-    static final Map<String, TestPropertyCreator> BUILDER = new HashMap<>();
+    private static final Logger log = LoggerFactory.getLogger(TestPropertyLoader.class);
+
+    static final Map<String, TestPropertyCreator> BUILDER = new ConcurrentHashMap<>();
 
     static {
         BUILDER.put("port", RefPortProperty::createTestProperty);
         BUILDER.put("host", RefHostProperty::createTestProperty);
         BUILDER.put("url", RefUrlProperty::createTestProperty);
+        BUILDER.put("ip", RefIpProperty::createTestProperty);
         BUILDER.put("env", TestEnvProperty::createTestProperty);
         BUILDER.put("prop", TestPropProperty::createTestProperty);
+        BUILDER.put("file", FileContentProperty::createTestProperty);
+        BUILDER.put("free-port", FreePortProperty::createTestProperty);
+        // custom creators of the test class-path
+        for (TestPropertyCreator creator : ServiceLoader.load(TestPropertyCreator.class, TestPropertyLoader.class.getClassLoader())) {
+            String type = creator.getType();
+            if (type == null || type.isBlank()) {
+                log.warn("Ignore the test property creator {} without the type", creator.getClass().getName());
+                continue;
+            }
+            register(type, creator);
+        }
     }
-    static final String PATTERN = "\\$\\$\\{(.*?)}";
-    static final Pattern REF_PATTERN = Pattern.compile(PATTERN);
 
     private TestPropertyLoader() {
     }
 
+    /**
+     * Registers the creator of the reference type, the creator replaces the existing creator of the type.
+     *
+     * @param type    the reference type, for example {@code port}.
+     * @param creator the test property creator.
+     */
+    public static void register(String type, TestPropertyCreator creator) {
+        TestPropertyCreator old = BUILDER.put(type, creator);
+        if (old != null) {
+            log.warn("The test property creator {} replaces the creator of the type '{}'", creator.getClass().getName(), type);
+        }
+    }
+
     public static TestProperty createTestProperty(String key, String value) {
-        List<String> matches = find(value);
-        if (matches.isEmpty()) {
-            return TestValueProperty.createTestProperty(key,value);
+        return createTestProperty(key, value, key);
+    }
+
+    /**
+     * Creates the test property of the value. The anonymous free ports <code>$${free-port}</code> of the value
+     * are named by the scope and their index, so the same configuration parsed again leases the same ports.
+     *
+     * @param key   the property name.
+     * @param value the property value.
+     * @param scope the unique scope of the property, for example the service name and the label.
+     * @return the test property.
+     */
+    public static TestProperty createTestProperty(String key, String value, String scope) {
+        if (!value.contains(PropertyTemplate.REF_START)) {
+            return TestValueProperty.createTestProperty(key, value);
+        }
+        PropertyTemplate template = PropertyTemplate.compile(value);
+        if (template.isConstant()) {
+            // only escaped references
+            return TestValueProperty.createTestProperty(key, template.render((DockerTestEnvironment) null));
         }
-        if (matches.size() == 1) {
-            return TestGroupProperty.createTestProperty(key, replaceAll(value), List.of(createTestPropertyInstance("group", matches.get(0))));
+        int index = 0;
+        for (TestProperty p : template.getProperties()) {
+            if (p instanceof FreePortProperty && ((FreePortProperty) p).anonymous) {
+                ((FreePortProperty) p).key = "free-port:" + scope + "#" + index++;
+            }
         }
-        List<TestProperty> testProperties = matches.stream()
-                .map(v -> createTestPropertyInstance("group", v))
-                .collect(Collectors.toList());
-        return TestGroupProperty.createTestProperty(key, replaceAll(value), testProperties);
+        return TestGroupProperty.createTestProperty(key, template);
     }
 
-    private static TestProperty createTestPropertyInstance(String key, String value) {
+    /**
+     * Creates the test property of the reference expression {@code type:arg:arg}.
+     *
+     * @param value the reference expression, for example {@code port:db:5432}.
+     * @return the test property.
+     */
+    static TestProperty createReference(String value) {
         String[] data = value.split(":", 3);
         TestPropertyCreator builder = BUILDER.get(data[0]);
         if (builder != null) {
-            return builder.createTestProperty(key, data);
-        }
-        throw new IllegalStateException("Not supported type " + data[0] + " for key: " + key);
-    }
-
-    private static String replaceAll(String value) {
-        Matcher m = REF_PATTERN.matcher(value);
-     StringBuffer sb = new StringBuffer();
-     int index = 0;
-     while (m.find()) {
-         m.appendReplacement(sb, "{" + index + "}");
-         index++;
-      }
-      m.appendTail(sb);
-     return sb.toString();
-    }
-
-    private static List<String> find(String value) {
-        Matcher m = REF_PATTERN.matcher(value);
-        List<String> result = new ArrayList<>();
-        while (m.find()) {
-            result.add(m.group(1));
+            return builder.createTestProperty("group", data);
         }
-        return result;
+        throw new IllegalStateException("Not supported type " + data[0] + " for the reference: " + value);
     }
 
 }
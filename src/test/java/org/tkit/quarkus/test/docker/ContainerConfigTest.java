@@ -0,0 +1,114 @@
+package org.tkit.quarkus.test.docker;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+public class ContainerConfigTest {
+
+    @Test
+    public void parseDurationTest() {
+        Assertions.assertEquals(Duration.ofMillis(90_500), ContainerConfig.parseDuration("1m30s500ms"));
+        Assertions.assertEquals(Duration.ofMillis(50), ContainerConfig.parseDuration("50ms"));
+        Assertions.assertEquals(Duration.ofMillis(50), ContainerConfig.parseDuration("PT0.05S"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ContainerConfig.parseDuration("10x"));
+    }
+
+    @Test
+    public void readinessTest() {
+        ContainerConfig config = ContainerConfig.createContainerProperties("db", Map.of(
+                "healthcheck", Map.of("test", "pg_isready", "interval", "2s", "retries", 10),
+                "labels", List.of("test.Wait.forPort=5432, 5433", "test.Wait.forHttp.path=/q/health", "test.Wait.pollInterval=20ms")
+        ));
+
+        Assertions.assertEquals(List.of("CMD-SHELL", "pg_isready"), config.healthcheck.test);
+        Assertions.assertEquals(Duration.ofSeconds(2), config.healthcheck.interval);
+        Assertions.assertEquals(10, (int) config.healthcheck.retries);
+        Assertions.assertEquals(List.of(5432, 5433), config.waitPorts);
+        Assertions.assertEquals("/q/health", config.waitHttpPath);
+        Assertions.assertEquals(200, config.waitHttpStatus);
+        Assertions.assertEquals(Duration.ofMillis(20), config.waitPollInterval);
+        Assertions.assertEquals(ContainerConfig.DEFAULT_WAIT_TIMEOUT, config.waitTimeout);
+
+        config = ContainerConfig.createContainerProperties("app", Map.of("labels", List.of("test.Wait.timeout=3m")));
+        Assertions.assertEquals(Duration.ofMinutes(3), config.waitTimeout);
+    }
+
+    @Test
+    public void memoryTest() {
+        Assertions.assertEquals(512L * 1024 * 1024, ContainerConfig.parseMemory("512m"));
+        Assertions.assertEquals(1024L * 1024 * 1024, ContainerConfig.parseMemory("1GB"));
+        Assertions.assertEquals(100L, ContainerConfig.parseMemory("100"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ContainerConfig.parseMemory("1t"));
+
+        ContainerConfig config = ContainerConfig.createContainerProperties("db", Map.of(
+                "deploy", Map.of("resources", Map.of("limits", Map.of("memory", "256M")))
+        ));
+        Assertions.assertEquals(256L * 1024 * 1024, (long) config.memLimit);
+    }
+
+    @Test
+    public void resourcesTest() {
+        ContainerConfig config = ContainerConfig.createContainerProperties("db", Map.of(
+                "tmpfs", List.of("/run:size=64m"),
+                "shm_size", "256m",
+                "cpus", "1.5",
+                "ulimits", Map.of("nofile", Map.of("soft", 20000, "hard", 40000)),
+                "labels", List.of("test.storage.tmpfs=/var/lib/postgresql/data")
+        ));
+        Assertions.assertEquals(Map.of("/run", "size=64m", "/var/lib/postgresql/data", ""), config.tmpfs);
+        Assertions.assertEquals(256L * 1024 * 1024, (long) config.shmSize);
+        Assertions.assertEquals(1.5, config.cpus);
+        Assertions.assertArrayEquals(new long[]{20000, 40000}, config.ulimits.get("nofile"));
+
+        // the missing soft or hard limit is the other limit
+        config = ContainerConfig.createContainerProperties("db", Map.of(
+                "ulimits", Map.of("nofile", Map.of("hard", 40000), "nproc", Map.of("soft", 1024), "memlock", -1)
+        ));
+        Assertions.assertArrayEquals(new long[]{40000, 40000}, config.ulimits.get("nofile"));
+        Assertions.assertArrayEquals(new long[]{1024, 1024}, config.ulimits.get("nproc"));
+        Assertions.assertArrayEquals(new long[]{-1, -1}, config.ulimits.get("memlock"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ContainerConfig.createContainerProperties("db",
+                Map.of("ulimits", Map.of("nofile", Map.of()))));
+    }
+
+    @Test
+    public void volumeModeTest() {
+        ContainerConfig config = ContainerConfig.createContainerProperties("db", Map.of(
+                "volumes", List.of("./init:/docker-entrypoint-initdb.d:ro", "./data:/data", "./models:/models"),
+                "labels", List.of("test.volume.mode./models=cache")
+        ));
+        Assertions.assertEquals("/docker-entrypoint-initdb.d", config.volumes.get("./init"));
+        Assertions.assertEquals(ContainerConfig.VolumeMode.BIND, config.getVolumeMode("./init"));
+        Assertions.assertEquals(ContainerConfig.VolumeMode.COPY, config.getVolumeMode("./data"));
+        Assertions.assertEquals(ContainerConfig.VolumeMode.CACHE, config.getVolumeMode("./models"));
+    }
+
+    @Test
+    public void buildTest() {
+        ContainerConfig config = ContainerConfig.createContainerProperties("mock", Map.of("build", "./mock"));
+        Assertions.assertEquals("./mock", config.build.context);
+        Assertions.assertEquals("Dockerfile", config.build.dockerfile);
+
+        config = ContainerConfig.createContainerProperties("mock", Map.of(
+                "build", Map.of("context", "mock", "dockerfile", "Dockerfile.test", "args", List.of("VERSION=1.0"))
+        ));
+        Assertions.assertEquals("mock", config.build.context);
+        Assertions.assertEquals("Dockerfile.test", config.build.dockerfile);
+        Assertions.assertEquals(Map.of("VERSION", "1.0"), config.build.args);
+    }
+
+    @Test
+    public void lazyPropertyTest() {
+        ContainerConfig config = ContainerConfig.createContainerProperties("keycloak", Map.of(
+                "labels", List.of("test.property.lazy.quarkus.oidc.auth-server-url=$${url:keycloak:8080}",
+                        "test.integration.property.client-id=test")
+        ));
+        Assertions.assertEquals("quarkus.oidc.auth-server-url", config.getProperties(false).get(0).name);
+        Assertions.assertTrue(config.isLazy(false));
+        Assertions.assertFalse(config.isLazy(true));
+    }
+}
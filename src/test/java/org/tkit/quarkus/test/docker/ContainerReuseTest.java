@@ -0,0 +1,46 @@
+package org.tkit.quarkus.test.docker;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+public class ContainerReuseTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void fingerprintTest() throws Exception {
+        Map<String, Object> data = Map.of(
+                "image", "postgres:10.5",
+                "environment", Map.of("POSTGRES_DB", "parameter"),
+                "ports", List.of("5432:5432")
+        );
+        Path init = Files.writeString(dir.resolve("init.sql"), "CREATE TABLE parameter (id int);");
+        DockerComposeService service = TestServices.service("postgres", data);
+        service.getVolumePaths().put("/docker-entrypoint-initdb.d/init.sql", init);
+        String fingerprint = ContainerReuse.fingerprint(service, Map.of("DB_PORT", "5432"));
+
+        // the same configuration, environment and volume content attach to the running container
+        DockerComposeService same = TestServices.service("postgres", data);
+        same.getVolumePaths().put("/docker-entrypoint-initdb.d/init.sql", init);
+        Assertions.assertEquals(fingerprint, ContainerReuse.fingerprint(same, Map.of("DB_PORT", "5432")));
+
+        // the changed environment, configuration or volume content creates a new container
+        Assertions.assertNotEquals(fingerprint, ContainerReuse.fingerprint(same, Map.of("DB_PORT", "5433")));
+        DockerComposeService image = TestServices.service("postgres", Map.of(
+                "image", "postgres:11",
+                "environment", Map.of("POSTGRES_DB", "parameter"),
+                "ports", List.of("5432:5432")
+        ));
+        image.getVolumePaths().put("/docker-entrypoint-initdb.d/init.sql", init);
+        Assertions.assertNotEquals(fingerprint, ContainerReuse.fingerprint(image, Map.of("DB_PORT", "5432")));
+        Files.writeString(init, "CREATE TABLE parameter (id bigint);");
+        Assertions.assertNotEquals(fingerprint, ContainerReuse.fingerprint(same, Map.of("DB_PORT", "5432")));
+    }
+}
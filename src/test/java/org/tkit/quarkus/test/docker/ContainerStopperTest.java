@@ -0,0 +1,51 @@
+package org.tkit.quarkus.test.docker;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ContainerStopperTest {
+
+    @Test
+    public void syncTest() {
+        TestServices.TestService db = TestServices.service("db", Map.of());
+        TestServices.TestService app = TestServices.service("app", Map.of());
+        app.stopError = new IllegalStateException("container not found");
+        System.setProperty(ContainerStopper.SYS_PROP_STOP_MODE, "sync");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // the failed stop is reported and does not stop the other services
+            Assertions.assertDoesNotThrow(() -> ContainerStopper.create().stop(List.of(db, app), false, executor));
+            Assertions.assertEquals(List.of("stop db"), db.events);
+            Assertions.assertEquals(List.of("stop app"), app.events);
+        } finally {
+            System.clearProperty(ContainerStopper.SYS_PROP_STOP_MODE);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void ryukTest() {
+        Assumptions.assumeFalse(Boolean.parseBoolean(System.getenv("TESTCONTAINERS_RYUK_DISABLED")));
+        TestServices.TestService db = TestServices.service("db", Map.of());
+        TestServices.TestService app = TestServices.service("app", Map.of());
+        // the attached container of the shared environment is not owned by the service
+        app.owner = false;
+        System.setProperty(ContainerStopper.SYS_PROP_STOP_MODE, "ryuk");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            ContainerStopper.create().stop(List.of(db, app), false, executor);
+            // the owned container is handed to Ryuk, only its properties are cleared
+            Assertions.assertEquals(List.of("clear db"), db.events);
+            Assertions.assertEquals(List.of("stop app"), app.events);
+        } finally {
+            System.clearProperty(ContainerStopper.SYS_PROP_STOP_MODE);
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.tkit.quarkus.test.docker;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class DatabaseCheckpointTest {
+
+    @Test
+    public void configTest() {
+        ContainerConfig config = ContainerConfig.createContainerProperties("postgres", Map.of(
+                "environment", Map.of("POSTGRES_USER", "parameter"),
+                "labels", List.of("test.checkpoint=postgres")
+        ));
+        Assertions.assertEquals(DatabaseCheckpoint.TYPE_POSTGRES, config.checkpoint);
+        Assertions.assertEquals("parameter", config.checkpointUser);
+        Assertions.assertEquals("parameter", config.checkpointDatabase);
+        Assertions.assertEquals("parameter_checkpoint_base_data", DatabaseCheckpoint.PostgresCheckpoint.templateName("parameter", "Base-Data"));
+    }
+
+    @Test
+    public void retryTest() {
+        DockerComposeService service = TestServices.service("postgres", Map.of(
+                "environment", Map.of("POSTGRES_USER", "parameter"),
+                "labels", List.of("test.checkpoint=postgres")
+        ));
+        List<String> statements = new ArrayList<>();
+        DatabaseCheckpoint checkpoint = new DatabaseCheckpoint.PostgresCheckpoint(service) {
+            @Override
+            protected String exec(String... cmd) {
+                statements.add(cmd[cmd.length - 1]);
+                if (statements.size() == 1) {
+                    throw new IllegalStateException("ERROR: database \"parameter\" is being accessed by other users");
+                }
+                return "";
+            }
+        };
+        checkpoint.checkpoint("base");
+        checkpoint.restore("base");
+        // the failed attempt is retried, every attempt rejects the new connections before the statements
+        Assertions.assertEquals(5, statements.size());
+        Assertions.assertEquals("ALTER DATABASE \"parameter\" ALLOW_CONNECTIONS true", statements.get(2));
+    }
+}
@@ -0,0 +1,51 @@
+package org.tkit.quarkus.test.docker;
+
+import com.github.dockerjava.api.model.AccessMode;
+import com.github.dockerjava.api.model.Bind;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+public class DockerComposeServiceTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void volumeModeTest() throws Exception {
+        Path init = Files.createDirectory(dir.resolve("init"));
+        Path data = Files.createDirectory(dir.resolve("data"));
+        Path models = Files.createDirectory(dir.resolve("models"));
+        Files.writeString(models.resolve("model.bin"), "model-1");
+        ContainerConfig config = ContainerConfig.createContainerProperties("db", Map.of(
+                "image", "postgres:10.5",
+                "volumes", List.of(init + ":/docker-entrypoint-initdb.d:ro", data + ":/data:z,rw", models + ":/models"),
+                "labels", List.of("test.volume.mode./data=bind", "test.volume.mode./models=cache")
+        ));
+        DockerComposeService service = DockerComposeService.createDockerComposeService(null, config, dir);
+
+        // the bind mounts are read-only unless the compose volume has the rw option
+        Map<String, Bind> binds = service.getContainer().getBinds().stream()
+                .collect(Collectors.toMap(b -> b.getVolume().getPath(), Function.identity()));
+        Assertions.assertEquals(init.toString(), binds.get("/docker-entrypoint-initdb.d").getPath());
+        Assertions.assertEquals(AccessMode.ro, binds.get("/docker-entrypoint-initdb.d").getAccessMode());
+        Assertions.assertEquals(data.toString(), binds.get("/data").getPath());
+        Assertions.assertEquals(AccessMode.rw, binds.get("/data").getAccessMode());
+        // the cache volume is attached by the create of the container
+        Assertions.assertFalse(binds.containsKey("/models"));
+        Assertions.assertEquals(models, service.getVolumePaths().get("/models"));
+
+        // the cache volume is addressed by the content of the directory
+        String name = VolumeCache.volumeName(models);
+        Assertions.assertEquals(name, VolumeCache.volumeName(models));
+        Files.writeString(models.resolve("model.bin"), "model-2");
+        Assertions.assertNotEquals(name, VolumeCache.volumeName(models));
+    }
+}
@@ -0,0 +1,54 @@
+package org.tkit.quarkus.test.docker;
+
+import org.eclipse.microprofile.config.spi.ConfigSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+public class DockerTestConfigSourceTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void ordinalTest() {
+        ConfigSource source = ServiceLoader.load(ConfigSource.class).stream()
+                .map(ServiceLoader.Provider::get)
+                .filter(DockerTestConfigSource.class::isInstance)
+                .findFirst().orElse(null);
+        Assertions.assertNotNull(source);
+        // the test properties override the system properties with the ordinal 400
+        Assertions.assertTrue(source.getOrdinal() > 400);
+    }
+
+    @Test
+    public void lookupTest() throws Exception {
+        Path file = Files.writeString(dir.resolve("docker-compose.yml"), "services:\n"
+                + "  db:\n"
+                + "    image: postgres:10.5\n");
+        DockerTestEnvironment environment = TestServices.environment(file, true, Collections.synchronizedList(new ArrayList<>()));
+        ((TestServices.TestService) environment.getService("db")).properties.put("quarkus.datasource.jdbc.url", "jdbc:postgresql://localhost:32001/p");
+        System.setProperty(StartScheduler.SYS_PROP_START_TIMES, dir.resolve("start-times.properties").toString());
+        System.setProperty(StartupReport.SYS_PROP_REPORT, "false");
+        DockerTestConfigSource source = new DockerTestConfigSource();
+        try {
+            environment.startServices(Set.of("db"), false);
+            DockerTestEnvironment.setCurrent(environment);
+            Assertions.assertEquals("jdbc:postgresql://localhost:32001/p", source.getValue("quarkus.datasource.jdbc.url"));
+            Assertions.assertEquals("jdbc:postgresql://localhost:32001/p", source.getProperties().get("quarkus.datasource.jdbc.url"));
+            Assertions.assertNull(source.getValue("quarkus.http.port"));
+        } finally {
+            DockerTestEnvironment.clearCurrent(environment);
+            System.clearProperty(StartScheduler.SYS_PROP_START_TIMES);
+            System.clearProperty(StartupReport.SYS_PROP_REPORT);
+            environment.stop();
+        }
+    }
+}
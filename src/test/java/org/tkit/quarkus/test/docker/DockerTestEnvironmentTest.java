@@ -0,0 +1,179 @@
+package org.tkit.quarkus.test.docker;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class DockerTestEnvironmentTest {
+
+    private static final String COMPOSE = "services:\n"
+            + "  db:\n"
+            + "    image: postgres:%s\n"
+            + "  app:\n"
+            + "    image: app:1\n"
+            + "    labels:\n"
+            + "      - \"test.env.DB_PORT=$${port:db:5432}\"\n"
+            + "  other:\n"
+            + "    image: other:1\n";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void refreshTest() throws Exception {
+        Path file = dir.resolve("docker-compose.yml");
+        Files.writeString(file, String.format(COMPOSE, "10.5"));
+        System.setProperty(ImagePrefetcher.SYS_PROP_PREFETCH, "false");
+        DockerTestEnvironment environment;
+        try {
+            environment = new DockerTestEnvironment(file.toString());
+        } finally {
+            System.clearProperty(ImagePrefetcher.SYS_PROP_PREFETCH);
+        }
+        DockerComposeService db = environment.getService("db");
+        DockerComposeService app = environment.getService("app");
+        DockerComposeService other = environment.getService("other");
+
+        Assertions.assertTrue(environment.refresh().isEmpty());
+        Assertions.assertSame(db, environment.getService("db"));
+
+        // the changed service and the service with its port in the environment are restarted
+        Files.writeString(file, String.format(COMPOSE, "11"));
+        Assertions.assertEquals(Set.of("db", "app"), environment.refresh());
+        Assertions.assertNotSame(db, environment.getService("db"));
+        Assertions.assertEquals("postgres:11", environment.getService("db").getConfig().image);
+        Assertions.assertNotSame(app, environment.getService("app"));
+        // the unchanged service keeps its container
+        Assertions.assertSame(other, environment.getService("other"));
+        Assertions.assertSame(other.getContainer(), environment.getService("other").getContainer());
+    }
+
+    @Test
+    public void releaseTest() throws Exception {
+        Path file = Files.writeString(dir.resolve("docker-compose.yml"), "services:\n"
+                + "  db:\n"
+                + "    image: postgres:10.5\n"
+                + "  app:\n"
+                + "    image: app:1\n"
+                + "    depends_on:\n"
+                + "      - db\n"
+                + "  kafka:\n"
+                + "    image: kafka:1\n");
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+        DockerTestEnvironment environment = TestServices.environment(file, false, events);
+        System.setProperty(StartScheduler.SYS_PROP_START_TIMES, dir.resolve("start-times.properties").toString());
+        System.setProperty(StartupReport.SYS_PROP_REPORT, "false");
+        try {
+            environment.startServices(Set.of("db", "app", "kafka"), false);
+            Assertions.assertTrue(events.containsAll(List.of("start db", "start app", "start kafka")));
+            events.clear();
+
+            // the dependency of the used service keeps running
+            environment.release(Set.of("app"));
+            Assertions.assertEquals(List.of("stop kafka"), events);
+            Assertions.assertFalse(environment.getStartFuture("kafka").isDone());
+            Assertions.assertTrue(environment.getStartFuture("db").isDone());
+
+            // the stopped service is started again by the next test class
+            events.clear();
+            environment.startServices(Set.of("kafka"), false);
+            Assertions.assertEquals(List.of("start kafka"), events);
+
+            events.clear();
+            environment.release(Set.of());
+            Assertions.assertEquals(Set.of("stop db", "stop app", "stop kafka"), Set.copyOf(events));
+        } finally {
+            System.clearProperty(StartScheduler.SYS_PROP_START_TIMES);
+            System.clearProperty(StartupReport.SYS_PROP_REPORT);
+            environment.stop();
+        }
+    }
+
+    @Test
+    public void isolationTest() throws Exception {
+        Path file = Files.writeString(dir.resolve("docker-compose.yml"), "services:\n"
+                + "  db:\n"
+                + "    image: postgres:10.5\n");
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+        DockerTestEnvironment worker1 = TestServices.environment(file, true, events);
+        DockerTestEnvironment worker2 = TestServices.environment(file, true, events);
+        ((TestServices.TestService) worker1.getService("db")).properties.put("quarkus.datasource.jdbc.url", "jdbc:postgresql://localhost:32001/p");
+        ((TestServices.TestService) worker2.getService("db")).properties.put("quarkus.datasource.jdbc.url", "jdbc:postgresql://localhost:32002/p");
+        System.setProperty(StartScheduler.SYS_PROP_START_TIMES, dir.resolve("start-times.properties").toString());
+        System.setProperty(StartupReport.SYS_PROP_REPORT, "false");
+        try {
+            worker1.startServices(Set.of("db"), false);
+            worker2.startServices(Set.of("db"), false);
+            Assertions.assertNotSame(worker1.getService("db"), worker2.getService("db"));
+
+            // every worker thread reads only the properties of its own environment
+            CompletableFuture<String> url1 = CompletableFuture.supplyAsync(() -> readProperty(worker1, "quarkus.datasource.jdbc.url"));
+            CompletableFuture<String> url2 = CompletableFuture.supplyAsync(() -> readProperty(worker2, "quarkus.datasource.jdbc.url"));
+            Assertions.assertEquals("jdbc:postgresql://localhost:32001/p", url1.get());
+            Assertions.assertEquals("jdbc:postgresql://localhost:32002/p", url2.get());
+            Assertions.assertNull(DockerTestEnvironment.current());
+        } finally {
+            System.clearProperty(StartScheduler.SYS_PROP_START_TIMES);
+            System.clearProperty(StartupReport.SYS_PROP_REPORT);
+            worker1.stop();
+            worker2.stop();
+        }
+    }
+
+    @Test
+    public void lazyPropertyTest() throws Exception {
+        Path file = Files.writeString(dir.resolve("docker-compose.yml"), "services:\n"
+                + "  db:\n"
+                + "    image: postgres:10.5\n"
+                + "    labels:\n"
+                + "      - \"test.property.quarkus.datasource.jdbc.url=jdbc:postgresql://$${host:db}:$${port:db:5432}/p\"\n"
+                + "  keycloak:\n"
+                + "    image: keycloak:12\n"
+                + "    labels:\n"
+                + "      - \"test.property.lazy.quarkus.oidc.auth-server-url=$${url:keycloak:8080}/auth\"\n");
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+        DockerTestEnvironment environment = TestServices.environment(file, true, events);
+        TestServices.TestService keycloak = (TestServices.TestService) environment.getService("keycloak");
+        keycloak.properties.put("quarkus.oidc.auth-server-url", "http://localhost:32080/auth");
+        keycloak.startLatch = new CountDownLatch(1);
+        System.setProperty(StartScheduler.SYS_PROP_START_TIMES, dir.resolve("start-times.properties").toString());
+        System.setProperty(StartupReport.SYS_PROP_REPORT, "false");
+        try {
+            // the start does not wait for the service with only lazy properties
+            environment.startServices(Set.of("db", "keycloak"), false);
+            Assertions.assertTrue(environment.getStartFuture("db").isDone());
+            Assertions.assertFalse(environment.getStartFuture("keycloak").isDone());
+
+            // the read of the lazy property waits for the start of its service
+            CompletableFuture<String> url = CompletableFuture.supplyAsync(() -> readProperty(environment, "quarkus.oidc.auth-server-url"));
+            Thread.sleep(200);
+            Assertions.assertFalse(url.isDone());
+            keycloak.startLatch.countDown();
+            Assertions.assertEquals("http://localhost:32080/auth", url.get(5, TimeUnit.SECONDS));
+        } finally {
+            keycloak.startLatch.countDown();
+            System.clearProperty(StartScheduler.SYS_PROP_START_TIMES);
+            System.clearProperty(StartupReport.SYS_PROP_REPORT);
+            environment.stop();
+        }
+    }
+
+    private static String readProperty(DockerTestEnvironment environment, String key) {
+        DockerTestEnvironment.setCurrent(environment);
+        try {
+            return DockerTestEnvironment.property(key, null);
+        } finally {
+            DockerTestEnvironment.clearCurrent(environment);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.tkit.quarkus.test.docker;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class FixtureBakeTest {
+
+    @Test
+    public void importErrorTest() {
+        DockerComposeService service = TestServices.service("postgres", Map.of(
+                "image", "postgres:10.5",
+                "labels", List.of("test.bake=true", "test.bake.data=data/parameters.xls,data/missing.xls")
+        ));
+        FixtureBake bake = new FixtureBake(service, "tkit-bake/test-postgres", "0");
+        List<String> imported = new ArrayList<>();
+        // the failed import does not fail the tests, the image is not baked
+        Assertions.assertDoesNotThrow(() -> bake.bake(path -> {
+            if (path.contains("missing")) {
+                throw new IllegalStateException("relation does not exist");
+            }
+            imported.add(path);
+        }));
+        Assertions.assertEquals(List.of("data/parameters.xls"), imported);
+        Assertions.assertFalse(bake.isBaked());
+        // the imported file is skipped by the first import of the test, the failed file is imported
+        Assertions.assertTrue(FixtureBake.consume("data/parameters.xls"));
+        Assertions.assertFalse(FixtureBake.consume("data/missing.xls"));
+    }
+}
@@ -0,0 +1,60 @@
+package org.tkit.quarkus.test.docker;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class PortLeaseTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void rangeTest() {
+        Assertions.assertArrayEquals(new int[]{20000, 29999}, PortLease.parseRange("20000-29999"));
+        Assertions.assertArrayEquals(new int[]{8080, 8080}, PortLease.parseRange("8080"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> PortLease.parseRange("9000-8000"));
+    }
+
+    @Test
+    public void acquireTest() {
+        System.setProperty(PortLease.SYS_PROP_PORT_LEASE_RANGE, "41000-41100");
+        try (PortLease first = PortLease.acquire("db", 41000); PortLease second = PortLease.acquire("db", first.getPort())) {
+            Assertions.assertNotEquals(first.getPort(), second.getPort());
+            Assertions.assertTrue(second.getPort() >= 41000 && second.getPort() <= 41100);
+        } finally {
+            System.clearProperty(PortLease.SYS_PROP_PORT_LEASE_RANGE);
+        }
+    }
+
+    @Test
+    public void keepLeaseTest() throws Exception {
+        System.setProperty(PortLease.SYS_PROP_PORT_LEASE_DIR, dir.toString());
+        System.setProperty(PortLease.SYS_PROP_PORT_LEASE_RANGE, "41200-41300");
+        try (PortLease first = PortLease.acquire("db", 41200); PortLease second = PortLease.acquire("db", first.getPort())) {
+            Assertions.assertNotEquals(first.getPort(), second.getPort());
+            // the second acquire of the same port must not release the file lock of the first lease
+            Assertions.assertTrue(isLocked(dir.resolve(first.getPort() + ".lock")));
+            Assertions.assertTrue(isLocked(dir.resolve(second.getPort() + ".lock")));
+        } finally {
+            System.clearProperty(PortLease.SYS_PROP_PORT_LEASE_DIR);
+            System.clearProperty(PortLease.SYS_PROP_PORT_LEASE_RANGE);
+        }
+    }
+
+    /**
+     * Checks the lock of the file by another process, the locks are owned by the process.
+     */
+    private boolean isLocked(Path file) throws Exception {
+        Path source = dir.resolve("TryLock.java");
+        Files.writeString(source, "public class TryLock { public static void main(String[] args) throws Exception {"
+                + " try (java.nio.channels.FileChannel c = java.nio.channels.FileChannel.open(java.nio.file.Paths.get(args[0]),"
+                + " java.nio.file.StandardOpenOption.WRITE)) { System.exit(c.tryLock() == null ? 1 : 0); } } }");
+        String java = ProcessHandle.current().info().command().orElse("java");
+        Process process = new ProcessBuilder(java, source.toString(), file.toString()).inheritIO().start();
+        return process.waitFor() == 1;
+    }
+}
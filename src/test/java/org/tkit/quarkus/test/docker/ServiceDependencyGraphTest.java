@@ -0,0 +1,68 @@
+package org.tkit.quarkus.test.docker;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+public class ServiceDependencyGraphTest {
+
+    @Test
+    public void dependenciesTest() {
+        List<DockerComposeService> services = List.of(
+                service("db", Map.of()),
+                service("kafka", Map.of()),
+                service("app", Map.of(
+                        "depends_on", List.of("db"),
+                        "labels", List.of("test.priority=101", "test.property.kafka.url=$${host:kafka}:$${port:kafka:9092}")
+                )),
+                service("legacy", Map.of("labels", List.of("test.priority=101")))
+        );
+
+        ServiceDependencyGraph graph = ServiceDependencyGraph.create(services, false);
+
+        Assertions.assertEquals(Set.of(), graph.getDependencies("db"));
+        Assertions.assertEquals(Set.of("db", "kafka"), graph.getDependencies("app"));
+        // no explicit dependencies, fallback to the priority
+        Assertions.assertEquals(Set.of("db", "kafka"), graph.getDependencies("legacy"));
+
+        List<String> order = graph.getStartOrder();
+        Assertions.assertTrue(order.indexOf("db") < order.indexOf("app"));
+        Assertions.assertTrue(order.indexOf("kafka") < order.indexOf("app"));
+    }
+
+    @Test
+    public void closureTest() {
+        List<DockerComposeService> services = List.of(
+                service("db", Map.of("labels", List.of("test.priority=100"))),
+                service("kafka", Map.of("labels", List.of("test.priority=100"))),
+                service("keycloak", Map.of("depends_on", List.of("db"))),
+                service("app", Map.of(
+                        "depends_on", List.of("keycloak"),
+                        "labels", List.of("test.priority=101")
+                )),
+                service("legacy", Map.of("labels", List.of("test.priority=101")))
+        );
+        ServiceDependencyGraph graph = ServiceDependencyGraph.create(services, false);
+
+        Assertions.assertEquals(Set.of("app", "keycloak", "db"), graph.getClosure(List.of("app")));
+        // the priority fallback does not add services
+        Assertions.assertEquals(Set.of("legacy"), graph.getClosure(List.of("legacy")));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> graph.getClosure(List.of("unknown")));
+    }
+
+    @Test
+    public void cycleTest() {
+        List<DockerComposeService> services = List.of(
+                service("a", Map.of("depends_on", List.of("b"))),
+                service("b", Map.of("labels", List.of("test.env.A_HOST=$${host:a}")))
+        );
+        ServiceDependencyGraph graph = ServiceDependencyGraph.create(services, false);
+        IllegalStateException ex = Assertions.assertThrows(IllegalStateException.class, graph::getStartOrder);
+        Assertions.assertEquals("Cyclic dependency between the docker services: a -> b -> a", ex.getMessage());
+    }
+
+    private static DockerComposeService service(String name, Map<String, Object> data) {
+        return TestServices.service(name, data);
+    }
+}
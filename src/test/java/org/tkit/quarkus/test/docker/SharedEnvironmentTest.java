@@ -0,0 +1,72 @@
+package org.tkit.quarkus.test.docker;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class SharedEnvironmentTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void ownerExitTest() throws Exception {
+        Process owner = new ProcessBuilder("sleep", "60").start();
+        Process fork = new ProcessBuilder("sleep", "60").start();
+        System.setProperty(SharedEnvironment.SYS_PROP_SHARED, "true");
+        System.setProperty(SharedEnvironment.SYS_PROP_SHARED_DIR, dir.toString());
+        try {
+            Path stateFile = dir.resolve("tkit-docker-env.properties");
+            Properties state = new Properties();
+            state.setProperty("owner", Long.toString(owner.pid()));
+            state.setProperty("forks", owner.pid() + "," + fork.pid());
+            state.setProperty("service.db.container", "db-container-id");
+            try (OutputStream out = Files.newOutputStream(stateFile)) {
+                state.store(out, null);
+            }
+            // the owner leaves the environment, the fork still uses the containers
+            owner.destroyForcibly().waitFor();
+
+            Map<String, String> attached = new HashMap<>();
+            DockerTestEnvironment environment = new DockerTestEnvironment(dir.resolve("docker-compose.yml").toString()) {
+                @Override
+                void attachServices(Map<String, String> containerIds, boolean integrationTest) {
+                    attached.putAll(containerIds);
+                }
+
+                @Override
+                void startServices(boolean integrationTest) {
+                    throw new IllegalStateException("Second shared environment started");
+                }
+            };
+            SharedEnvironment shared = SharedEnvironment.create();
+            shared.start(environment, false);
+
+            Assertions.assertFalse(shared.isOwner());
+            Assertions.assertEquals(Map.of("db", "db-container-id"), attached);
+            Properties result = new Properties();
+            try (InputStream in = Files.newInputStream(stateFile)) {
+                result.load(in);
+            }
+            Assertions.assertEquals("db-container-id", result.getProperty("service.db.container"));
+            Set<Long> forks = Stream.of(result.getProperty("forks").split(",")).map(Long::parseLong).collect(Collectors.toSet());
+            Assertions.assertEquals(Set.of(fork.pid(), ProcessHandle.current().pid()), forks);
+        } finally {
+            System.clearProperty(SharedEnvironment.SYS_PROP_SHARED);
+            System.clearProperty(SharedEnvironment.SYS_PROP_SHARED_DIR);
+            owner.destroyForcibly();
+            fork.destroyForcibly();
+        }
+    }
+}
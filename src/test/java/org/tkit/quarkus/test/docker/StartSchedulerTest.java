@@ -0,0 +1,184 @@
+package org.tkit.quarkus.test.docker;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class StartSchedulerTest {
+
+    @Test
+    public void cancelTest() throws Exception {
+        System.setProperty(StartScheduler.SYS_PROP_START_CONCURRENCY, "1");
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            StartScheduler scheduler = StartScheduler.create(executor);
+            CountDownLatch running = new CountDownLatch(1);
+            CompletableFuture<Void> first = scheduler.submit(service("first"), () -> {
+                running.countDown();
+                try {
+                    Thread.sleep(60_000);
+                } catch (InterruptedException ex) {
+                    throw new IllegalStateException("interrupted");
+                }
+            });
+            CompletableFuture<Void> second = scheduler.submit(service("second"), () -> {
+            });
+            scheduler.start();
+            Assertions.assertTrue(running.await(5, TimeUnit.SECONDS));
+            Assertions.assertFalse(second.isDone());
+
+            scheduler.cancel();
+            Assertions.assertTrue(scheduler.awaitRunning(Duration.ofSeconds(5)));
+            Assertions.assertTrue(first.isCompletedExceptionally());
+            CompletableFuture<Throwable> error = second.handle((r, e) -> e);
+            Assertions.assertTrue(error.get() instanceof CancellationException);
+        } finally {
+            System.clearProperty(StartScheduler.SYS_PROP_START_CONCURRENCY);
+            executor.shutdownNow();
+        }
+    }
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void orderTest() throws Exception {
+        Path times = dir.resolve("start-times.properties");
+        System.setProperty(StartScheduler.SYS_PROP_START_CONCURRENCY, "1");
+        System.setProperty(StartScheduler.SYS_PROP_START_TIMES, times.toString());
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            Properties history = new Properties();
+            history.setProperty("fast", "10");
+            history.setProperty("slow", "3000");
+            history.setProperty("medium", "500");
+            try (OutputStream out = Files.newOutputStream(times)) {
+                history.store(out, null);
+            }
+
+            StartScheduler scheduler = StartScheduler.create(executor);
+            List<String> order = Collections.synchronizedList(new ArrayList<>());
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (String name : List.of("fast", "medium", "unknown", "slow")) {
+                futures.add(scheduler.submit(service(name), () -> order.add(name)));
+            }
+            Assertions.assertTrue(order.isEmpty());
+            scheduler.start();
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+            Assertions.assertEquals(List.of("unknown", "slow", "medium", "fast"), order);
+        } finally {
+            System.clearProperty(StartScheduler.SYS_PROP_START_CONCURRENCY);
+            System.clearProperty(StartScheduler.SYS_PROP_START_TIMES);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void concurrencyTest() throws Exception {
+        System.setProperty(StartScheduler.SYS_PROP_START_CONCURRENCY, "2");
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            StartScheduler scheduler = StartScheduler.create(executor);
+            CountDownLatch release = new CountDownLatch(1);
+            AtomicInteger current = new AtomicInteger();
+            AtomicInteger max = new AtomicInteger();
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                futures.add(scheduler.submit(service("s" + i), () -> {
+                    max.accumulateAndGet(current.incrementAndGet(), Math::max);
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException ex) {
+                        throw new IllegalStateException("interrupted");
+                    } finally {
+                        current.decrementAndGet();
+                    }
+                }));
+            }
+            scheduler.start();
+            Thread.sleep(200);
+            Assertions.assertEquals(2, current.get());
+            Assertions.assertEquals(5, futures.stream().filter(f -> !f.isDone()).count());
+
+            release.countDown();
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+            Assertions.assertEquals(2, max.get());
+        } finally {
+            System.clearProperty(StartScheduler.SYS_PROP_START_CONCURRENCY);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void memoryTest() throws Exception {
+        System.setProperty(StartScheduler.SYS_PROP_START_CONCURRENCY, "4");
+        System.setProperty(StartScheduler.SYS_PROP_START_MEMORY, "1g");
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            StartScheduler scheduler = StartScheduler.create(executor);
+            Set<String> running = ConcurrentHashMap.newKeySet();
+            Map<String, Set<String>> overlaps = new ConcurrentHashMap<>();
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            Map<String, String> services = Map.of("a", "600m", "b", "300m", "big", "2g", "c", "600m");
+            for (Map.Entry<String, String> e : services.entrySet()) {
+                futures.add(scheduler.submit(service(e.getKey(), e.getValue()), () -> {
+                    overlaps.put(e.getKey(), new HashSet<>(running));
+                    running.add(e.getKey());
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException ex) {
+                        throw new IllegalStateException("interrupted");
+                    } finally {
+                        running.remove(e.getKey());
+                    }
+                }));
+            }
+            scheduler.start();
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+
+            Assertions.assertEquals(services.keySet(), overlaps.keySet());
+            // the service over the budget starts alone
+            Assertions.assertTrue(overlaps.get("big").isEmpty());
+            Assertions.assertTrue(overlaps.values().stream().noneMatch(v -> v.contains("big")));
+            // a and c exceed the budget together
+            Assertions.assertFalse(overlaps.get("a").contains("c") || overlaps.get("c").contains("a"));
+        } finally {
+            System.clearProperty(StartScheduler.SYS_PROP_START_CONCURRENCY);
+            System.clearProperty(StartScheduler.SYS_PROP_START_MEMORY);
+            executor.shutdownNow();
+        }
+    }
+
+    private static DockerComposeService service(String name) {
+        return service(name, null);
+    }
+
+    private static DockerComposeService service(String name, String memLimit) {
+        Map<String, Object> data = new HashMap<>();
+        if (memLimit != null) {
+            data.put("mem_limit", memLimit);
+        }
+        return TestServices.service(name, data);
+    }
+}
@@ -0,0 +1,129 @@
+package org.tkit.quarkus.test.docker;
+
+import org.testcontainers.containers.Network;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The docker services of the tests without the docker daemon.
+ */
+public class TestServices {
+
+    private TestServices() {
+    }
+
+    /**
+     * Creates the test service of the docker compose service data.
+     *
+     * @param name the service name.
+     * @param data the docker compose service data.
+     * @return the test service.
+     */
+    public static TestService service(String name, Map<String, Object> data) {
+        return new TestService(ContainerConfig.createContainerProperties(name, new HashMap<>(data)), Collections.synchronizedList(new ArrayList<>()));
+    }
+
+    /**
+     * Creates the environment of the docker compose file with the test services.
+     *
+     * @param file     the docker compose file.
+     * @param isolated the isolated environment.
+     * @param events   the start and stop events of the services.
+     * @return the docker test environment.
+     */
+    public static DockerTestEnvironment environment(Path file, boolean isolated, List<String> events) {
+        System.setProperty("test.docker.compose.file", file.toString());
+        System.setProperty(ImagePrefetcher.SYS_PROP_PREFETCH, "false");
+        try {
+            return new DockerTestEnvironment(isolated) {
+                @Override
+                DockerComposeService createService(Network network, ContainerConfig config, Path dir) {
+                    return new TestService(config, events);
+                }
+            };
+        } finally {
+            System.clearProperty("test.docker.compose.file");
+            System.clearProperty(ImagePrefetcher.SYS_PROP_PREFETCH);
+        }
+    }
+
+    /**
+     * The service with the not started container which records the start and the stop.
+     */
+    public static class TestService extends DockerComposeService {
+
+        final List<String> events;
+
+        final Map<String, String> properties = new HashMap<>();
+
+        boolean owner = true;
+
+        RuntimeException stopError;
+
+        CountDownLatch startLatch;
+
+        private volatile boolean started;
+
+        TestService(ContainerConfig config, List<String> events) {
+            super(null, config, null);
+            this.events = events;
+        }
+
+        @Override
+        protected TestGenericContainer createContainer(Network network, ContainerConfig config, Path dir) {
+            return new TestGenericContainer(config.image != null ? config.image : "test") {
+                @Override
+                public String getContainerId() {
+                    return "test-" + config.name;
+                }
+            };
+        }
+
+        @Override
+        public void start(DockerTestEnvironment environment, boolean integrationTest) {
+            events.add("start " + getName());
+            if (startLatch != null) {
+                try {
+                    if (!startLatch.await(10, TimeUnit.SECONDS)) {
+                        throw new IllegalStateException("Timeout start of the service " + getName());
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted start of the service " + getName(), ex);
+                }
+            }
+            started = true;
+        }
+
+        @Override
+        public void stop(boolean integrationTest) {
+            events.add("stop " + getName());
+            started = false;
+            if (stopError != null) {
+                throw stopError;
+            }
+        }
+
+        @Override
+        public void clearProperties() {
+            events.add("clear " + getName());
+        }
+
+        @Override
+        public boolean isContainerOwner() {
+            return owner;
+        }
+
+        @Override
+        public Map<String, String> getProperties() {
+            return started ? properties : Collections.emptyMap();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.tkit.quarkus.test.docker.properties;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+public class PropertyResolverTest {
+
+    @Test
+    public void referenceOrderTest() {
+        PropertyResolver resolver = new PropertyResolver(null);
+        Map<String, String> result = resolver.resolve(List.of(
+                TestPropertyLoader.createTestProperty("app.url", "$${prop:app.host}:8080"),
+                TestPropertyLoader.createTestProperty("app.host", "$${prop:app.name}.local"),
+                TestPropertyLoader.createTestProperty("app.name", "parameter")
+        ));
+        Assertions.assertEquals(Map.of("app.url", "parameter.local:8080", "app.host", "parameter.local", "app.name", "parameter"), result);
+    }
+
+    @Test
+    public void errorTest() {
+        PropertyResolver resolver = new PropertyResolver(null);
+        IllegalStateException ex = Assertions.assertThrows(IllegalStateException.class, () -> resolver.resolve(List.of(
+                TestPropertyLoader.createTestProperty("a", "$${prop:b}"),
+                TestPropertyLoader.createTestProperty("b", "$${prop:a}")
+        )));
+        Assertions.assertEquals("Error resolve the test property 'a': Cyclic reference between the test properties: a -> b -> a", ex.getMessage());
+
+        ex = Assertions.assertThrows(IllegalStateException.class, () -> resolver.resolve(List.of(
+                TestPropertyLoader.createTestProperty("db.host", "$${host:missing}")
+        )));
+        Assertions.assertEquals("Error resolve the test property 'db.host': Service 'missing' is not part of the test environment", ex.getMessage());
+    }
+
+    @Test
+    public void creatorTest() {
+        TestPropertyLoader.register("upper", (name, data) -> TestValueProperty.createTestProperty(name, data[1].toUpperCase()));
+        PropertyResolver resolver = new PropertyResolver(null);
+        try {
+            Map<String, String> result = resolver.resolve(List.of(
+                    TestPropertyLoader.createTestProperty("name", "$${upper:parameter}"),
+                    TestPropertyLoader.createTestProperty("port", "$${free-port:app}"),
+                    TestPropertyLoader.createTestProperty("port.same", "$${free-port:app}"),
+                    TestPropertyLoader.createTestProperty("port.other", "$${free-port}"),
+                    TestPropertyLoader.createTestProperty("file", "$${file:target/missing.txt|none}")
+            ));
+            Assertions.assertEquals("PARAMETER", result.get("name"));
+            Assertions.assertEquals(result.get("port"), result.get("port.same"));
+            Assertions.assertNotEquals(result.get("port"), result.get("port.other"));
+            // the anonymous free port of the same property parsed again keeps the port
+            Assertions.assertEquals(result.get("port.other"), resolver.resolve(List.of(
+                    TestPropertyLoader.createTestProperty("port.other", "$${free-port}"))).get("port.other"));
+            Assertions.assertEquals("none", result.get("file"));
+        } finally {
+            resolver.close();
+            TestPropertyLoader.BUILDER.remove("upper");
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.tkit.quarkus.test.docker.properties;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.tkit.quarkus.test.docker.DockerTestEnvironment;
+
+import java.util.List;
+import java.util.Set;
+
+public class PropertyTemplateTest {
+
+    @Test
+    public void literalTest() {
+        PropertyTemplate template = PropertyTemplate.compile("{\"url\": 'jdbc:postgresql://db:5432/{db}'} \\$${env:X}");
+        Assertions.assertTrue(template.isConstant());
+        Assertions.assertEquals("{\"url\": 'jdbc:postgresql://db:5432/{db}'} $${env:X}", template.render((DockerTestEnvironment) null));
+    }
+
+    @Test
+    public void defaultValueTest() {
+        PropertyTemplate template = PropertyTemplate.compile("'$${env:TKIT_TEST_UNDEFINED|$${env:TKIT_TEST_UNDEFINED_2|db}}:{5432}'");
+        Assertions.assertFalse(template.isConstant());
+        Assertions.assertEquals("'db:{5432}'", template.render((DockerTestEnvironment) null));
+    }
+
+    @Test
+    public void referencedServicesTest() {
+        PropertyTemplate template = PropertyTemplate.compile("http://$${host:app}:$${port:app:8080}/$${env:TKIT_TEST_UNDEFINED|$${host:db}}");
+        Assertions.assertEquals(Set.of("app", "db"), template.getReferencedServices());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> PropertyTemplate.compile("$${host:app"));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void messageFormatTest() {
+        TestProperty property = TestGroupProperty.createTestProperty("url", "''{0}'':{1}", List.of(
+                TestValueProperty.createTestProperty("group", "db"),
+                TestValueProperty.createTestProperty("group", "5432")));
+        // the deprecated factory keeps the quoting of the message format
+        Assertions.assertEquals("'db':5432", property.getValue((DockerTestEnvironment) null));
+        Assertions.assertEquals("''db'':5432", TestPropertyLoader.createTestProperty("url", "''$${prop:TKIT_TEST_UNDEFINED|db}'':5432")
+                .getValue((DockerTestEnvironment) null));
+    }
+}